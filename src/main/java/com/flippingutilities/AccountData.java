@@ -28,21 +28,58 @@ package com.flippingutilities;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import lombok.Data;
 
 @Data
 public class AccountData
 {
 	private Map<Integer, OfferInfo> lastOffers = new HashMap<>();
-	private List<FlippingItem> trades = new ArrayList<>();
+	//indexed by item id so the item an offer is for is found without going through the whole list (see TradeList).
+	private TradeList trades = new TradeList();
 	private Instant sessionStartTime = Instant.now();
 	private Duration accumulatedSessionTime = Duration.ZERO;
 	private Instant lastSessionTimeUpdate;
 
+	//the sequence number of the last journal entry reflected in this data. When a snapshot of this object is stored,
+	//every journal entry up to and including this sequence number is already part of the snapshot.
+	private long journalSequence;
+
+	//set when the trade list is changed by something other than a new offer (such as the user resetting a panel). As
+	//only offers are journaled, such a change can only be persisted by storing a full snapshot.
+	private transient boolean snapshotRequired;
+
+	//the ids of the items that changed since the account was last stored, so that an account stored in shards only
+	//has its changed shards rewritten (see ShardManifest).
+	private transient Set<Integer> changedItemIds = new HashSet<>();
+
+	//the shard files the account was loaded from or last stored to, null if it isn't stored in shards. Used to only
+	//reload the shards that another client rewrote.
+	private transient Map<Integer, String> shardFiles;
+
+	public List<FlippingItem> getTrades()
+	{
+		return trades;
+	}
+
+	public void setTrades(List<FlippingItem> trades)
+	{
+		this.trades = trades instanceof TradeList ? (TradeList) trades : new TradeList(trades);
+	}
+
+	/**
+	 * @return the item with the item id, or null if the account hasn't traded it
+	 */
+	public FlippingItem findItem(int itemId)
+	{
+		return trades.findItem(itemId);
+	}
+
 	/**
 	 * resets all session related data associated with an account. This is only ever called when the plugin first starts
 	 * as thats when a new session is "started".
@@ -53,4 +90,93 @@ public class AccountData
 		accumulatedSessionTime = Duration.ZERO;
 		lastSessionTimeUpdate = null;
 	}
+
+	/**
+	 * @return a deep copy of this object, which can be stored on another thread while this one keeps changing
+	 */
+	public AccountData clone()
+	{
+		AccountData accountData = new AccountData();
+		lastOffers.forEach((slot, offer) -> accountData.lastOffers.put(slot, offer.clone()));
+		accountData.trades = trades.stream().map(FlippingItem::clone).collect(Collectors.toCollection(TradeList::new));
+		accountData.sessionStartTime = sessionStartTime;
+		accountData.accumulatedSessionTime = accumulatedSessionTime;
+		accountData.lastSessionTimeUpdate = lastSessionTimeUpdate;
+		accountData.journalSequence = journalSequence;
+		accountData.snapshotRequired = snapshotRequired;
+		accountData.changedItemIds = new HashSet<>(changedItemIds);
+		accountData.shardFiles = shardFiles == null ? null : new HashMap<>(shardFiles);
+		return accountData;
+	}
+
+	/**
+	 * Forgets the changes made since the account was last stored, as a copy holding them is about to be stored.
+	 */
+	public void clearChanges()
+	{
+		changedItemIds.clear();
+		snapshotRequired = false;
+	}
+
+	/**
+	 * Takes back the changes of a copy of this data that couldn't be stored, so they are stored with the next save.
+	 */
+	public void addChanges(AccountData copy)
+	{
+		changedItemIds.addAll(copy.changedItemIds);
+		snapshotRequired |= copy.snapshotRequired;
+	}
+
+	public long nextJournalSequence()
+	{
+		return ++journalSequence;
+	}
+
+	/**
+	 * This method updates the trade list in response to an OfferInfo based on whether an item
+	 * that matches what the offer was for already exists and whether the offer was a margin check.
+	 * <p>
+	 * If the offer was a margin check, and the item is present, that item's history and margin need
+	 * to be updated and it is moved to the front of the trade list. If the item isn't present, a FlippingItem
+	 * for the item in that offer is created and added to the front of the trades list.
+	 * <p>
+	 * If the offer was not a margin check and the item was present, just update the history and last traded
+	 * times of the object. (no need to update margins as the offer was not a margin check)
+	 * <p>
+	 * This is used both when an offer comes in from the client and when offers are replayed from the journal.
+	 *
+	 * @param newOffer new offer that just came in
+	 * @param itemName the name of the item, only used if the item is not present in the trade list
+	 * @param geLimit  the ge limit of the item, only used if the item is not present in the trade list
+	 */
+	public void applyOffer(OfferInfo newOffer, String itemName, int geLimit)
+	{
+		changedItemIds.add(newOffer.getItemId());
+
+		FlippingItem item = trades.findItem(newOffer.getItemId());
+
+		if (item != null)
+		{
+			if (newOffer.isMarginCheck())
+			{
+				trades.moveToFront(item.getItemId());
+				item.updateMargin(newOffer);
+			}
+			item.updateHistory(newOffer);
+			item.updateLatestTimes(newOffer);
+		}
+		else
+		{
+			item = new FlippingItem(newOffer.getItemId(), itemName, geLimit, newOffer.getMadeBy());
+
+			if (newOffer.isMarginCheck())
+			{
+				item.updateMargin(newOffer);
+			}
+			item.updateHistory(newOffer);
+			item.updateLatestTimes(newOffer);
+
+			trades.add(0, item);
+		}
+	}
 }
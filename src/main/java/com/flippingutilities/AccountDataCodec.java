@@ -0,0 +1,621 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.runelite.api.GrandExchangeOfferState;
+
+/**
+ * A compact binary encoding of {@link AccountData}, as an alternative to storing it as json. Json stores every offer
+ * as an object with its keys, its instants as nested objects and its state as the name of the enum, which makes up
+ * most of the size of an account's file. This encoding instead stores ints as varints, instants as epoch seconds
+ * (plus nanos, which are almost always 0), states as indices into a table of state names and strings (item names and
+ * who made an offer) as indices into a string table, so each distinct string is only stored once.
+ * <p>
+ * The layout is: magic, version, string table, state table, and then the account data itself. Version 2 added the
+ * archived history of an item, and version 1 files are still read.
+ */
+public class AccountDataCodec
+{
+	private static final byte[] MAGIC = {'F', 'U', 'A', 'D'};
+
+	private static final int VERSION = 2;
+
+	//the version that added each item's archived history.
+	private static final int ARCHIVED_HISTORY_VERSION = 2;
+
+	//upper bound on the initial capacity of collections so a corrupt size can't cause a huge allocation.
+	private static final int MAX_INITIAL_CAPACITY = 1024;
+
+	public static boolean isEncoded(byte[] header)
+	{
+		if (header.length < MAGIC.length)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < MAGIC.length; i++)
+		{
+			if (header[i] != MAGIC[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the stream starts with an encoded account without consuming anything from it, so the stream
+	 * has to support mark/reset.
+	 */
+	public static boolean isEncoded(InputStream in) throws IOException
+	{
+		byte[] header = new byte[MAGIC.length];
+		in.mark(header.length);
+		int read = 0;
+		while (read < header.length)
+		{
+			int n = in.read(header, read, header.length - read);
+			if (n < 0)
+			{
+				break;
+			}
+			read += n;
+		}
+		in.reset();
+		return read == header.length && isEncoded(header);
+	}
+
+	public static byte[] encode(AccountData accountData) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encode(accountData, out);
+		return out.toByteArray();
+	}
+
+	public static void encode(AccountData accountData, OutputStream out) throws IOException
+	{
+		//the body is written first as that's how we find out which strings go in the string table.
+		Encoder encoder = new Encoder();
+		encoder.writeAccountData(accountData);
+
+		Encoder header = new Encoder();
+		header.out.write(MAGIC);
+		header.writeVarInt(VERSION);
+		header.writeVarInt(encoder.strings.size());
+		encoder.strings.forEach(header::writeRawString);
+		header.writeVarInt(GrandExchangeOfferState.values().length);
+		for (GrandExchangeOfferState state : GrandExchangeOfferState.values())
+		{
+			header.writeRawString(state.name());
+		}
+
+		header.out.writeTo(out);
+		encoder.out.writeTo(out);
+	}
+
+	public static AccountData decode(InputStream in) throws IOException
+	{
+		Decoder decoder = new Decoder(new DataInputStream(in));
+
+		byte[] magic = new byte[MAGIC.length];
+		decoder.in.readFully(magic);
+		if (!isEncoded(magic))
+		{
+			throw new IOException("not an encoded account data file");
+		}
+
+		decoder.version = decoder.readVarInt();
+		if (decoder.version < 1 || decoder.version > VERSION)
+		{
+			throw new IOException("unsupported account data version " + decoder.version);
+		}
+
+		int numStrings = decoder.readSize();
+		List<String> strings = new ArrayList<>(Math.min(numStrings, MAX_INITIAL_CAPACITY));
+		for (int i = 0; i < numStrings; i++)
+		{
+			strings.add(decoder.readRawString());
+		}
+		decoder.strings = strings.toArray(new String[0]);
+
+		//states are stored by their index in the table the file was written with rather than by ordinal directly, so
+		//files stay readable even if the order of the enum changes.
+		int numStates = decoder.readSize();
+		List<GrandExchangeOfferState> states = new ArrayList<>(Math.min(numStates, MAX_INITIAL_CAPACITY));
+		for (int i = 0; i < numStates; i++)
+		{
+			String name = decoder.readRawString();
+			try
+			{
+				states.add(GrandExchangeOfferState.valueOf(name));
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IOException("unknown offer state " + name);
+			}
+		}
+		decoder.states = states.toArray(new GrandExchangeOfferState[0]);
+
+		try
+		{
+			return decoder.readAccountData();
+		}
+		catch (DateTimeException | ArithmeticException e)
+		{
+			//a corrupt time that is out of range
+			throw new IOException("malformed time", e);
+		}
+	}
+
+	private static class Encoder
+	{
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		private final Map<String, Integer> stringIds = new HashMap<>();
+		private final List<String> strings = new ArrayList<>();
+
+		private void writeAccountData(AccountData accountData)
+		{
+			writeVarLong(accountData.getJournalSequence());
+			writeInstant(accountData.getSessionStartTime());
+			writeDuration(accountData.getAccumulatedSessionTime());
+			writeInstant(accountData.getLastSessionTimeUpdate());
+
+			writeVarInt(accountData.getLastOffers().size());
+			accountData.getLastOffers().forEach((slot, offer) ->
+			{
+				writeSignedVarInt(slot);
+				writeOffer(offer);
+			});
+
+			writeVarInt(accountData.getTrades().size());
+			accountData.getTrades().forEach(this::writeItem);
+		}
+
+		private void writeItem(FlippingItem item)
+		{
+			writeSignedVarInt(item.getItemId());
+			writeString(item.getItemName());
+			writeSignedVarInt(item.getTotalGELimit());
+			writeSignedVarInt(item.getMarginCheckBuyPrice());
+			writeSignedVarInt(item.getMarginCheckSellPrice());
+			writeInstant(item.getMarginCheckBuyTime());
+			writeInstant(item.getMarginCheckSellTime());
+			writeInstant(item.getLatestBuyTime());
+			writeInstant(item.getLatestSellTime());
+			writeInstant(item.getLatestActivityTime());
+			writeFlags(item.isShouldExpandStatItem(), item.isShouldExpandHistory());
+			writeHistory(item.getHistory());
+			writeString(item.getFlippedBy());
+		}
+
+		private void writeHistory(HistoryManager history)
+		{
+			writeVarInt(history.getSlotHistory().size());
+			history.getSlotHistory().forEach((slot, offers) ->
+			{
+				writeSignedVarInt(slot);
+				writeOffers(offers);
+			});
+			writeOffers(history.getStandardizedOffers());
+			writeInstant(history.getNextGeLimitRefresh());
+			writeSignedVarInt(history.getItemsBoughtThisLimitWindow());
+
+			ArchivedHistory archive = history.getArchivedHistory();
+			writeFlags(archive != null);
+			if (archive != null)
+			{
+				writeFlags(archive.isValidFlippingOffer());
+				writeInstant(archive.getEarliestTime());
+				writeSignedVarInt(archive.getBoughtQuantity());
+				writeSignedVarLong(archive.getBoughtValue());
+				writeSignedVarInt(archive.getSoldQuantity());
+				writeSignedVarLong(archive.getSoldValue());
+				writeSignedVarInt(archive.getFlips());
+			}
+		}
+
+		private void writeOffers(List<OfferInfo> offers)
+		{
+			writeVarInt(offers.size());
+			offers.forEach(this::writeOffer);
+		}
+
+		private void writeOffer(OfferInfo offer)
+		{
+			writeFlags(offer.isBuy(), offer.isValidStatOffer(), offer.isValidFlippingOffer());
+			writeSignedVarInt(offer.getItemId());
+			writeSignedVarInt(offer.getCurrentQuantityInTrade());
+			writeSignedVarInt(offer.getPrice());
+			writeInstant(offer.getTime());
+			writeSignedVarInt(offer.getSlot());
+			writeVarInt(offer.getState() == null ? 0 : offer.getState().ordinal() + 1);
+			writeSignedVarInt(offer.getTickArrivedAt());
+			writeSignedVarInt(offer.getTicksSinceFirstOffer());
+			writeSignedVarInt(offer.getTotalQuantityInTrade());
+			writeSignedVarInt(offer.getQuantitySinceLastOffer());
+			writeString(offer.getMadeBy());
+		}
+
+		private void writeFlags(boolean... flags)
+		{
+			int packed = 0;
+			for (int i = 0; i < flags.length; i++)
+			{
+				if (flags[i])
+				{
+					packed |= 1 << i;
+				}
+			}
+			out.write(packed);
+		}
+
+		//an instant is written as a presence byte followed by its epoch seconds and nanos.
+		private void writeInstant(Instant instant)
+		{
+			if (instant == null)
+			{
+				out.write(0);
+				return;
+			}
+			out.write(1);
+			writeSignedVarLong(instant.getEpochSecond());
+			writeVarInt(instant.getNano());
+		}
+
+		private void writeDuration(Duration duration)
+		{
+			if (duration == null)
+			{
+				out.write(0);
+				return;
+			}
+			out.write(1);
+			writeSignedVarLong(duration.getSeconds());
+			writeVarInt(duration.getNano());
+		}
+
+		//strings are written as their index in the string table plus one, with 0 meaning null.
+		private void writeString(String s)
+		{
+			if (s == null)
+			{
+				writeVarInt(0);
+				return;
+			}
+
+			Integer id = stringIds.get(s);
+			if (id == null)
+			{
+				id = strings.size();
+				stringIds.put(s, id);
+				strings.add(s);
+			}
+			writeVarInt(id + 1);
+		}
+
+		private void writeRawString(String s)
+		{
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(bytes.length);
+			out.write(bytes, 0, bytes.length);
+		}
+
+		private void writeSignedVarInt(int value)
+		{
+			writeVarInt((value << 1) ^ (value >> 31));
+		}
+
+		private void writeVarInt(int value)
+		{
+			while ((value & ~0x7F) != 0)
+			{
+				out.write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		}
+
+		private void writeSignedVarLong(long value)
+		{
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+
+		private void writeVarLong(long value)
+		{
+			while ((value & ~0x7FL) != 0)
+			{
+				out.write((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			out.write((int) value);
+		}
+	}
+
+	private static class Decoder
+	{
+		private final DataInputStream in;
+		private String[] strings;
+		private GrandExchangeOfferState[] states;
+		private int version;
+
+		private Decoder(DataInputStream in)
+		{
+			this.in = in;
+		}
+
+		private AccountData readAccountData() throws IOException
+		{
+			AccountData accountData = new AccountData();
+			accountData.setJournalSequence(readVarLong());
+			accountData.setSessionStartTime(readInstant());
+			accountData.setAccumulatedSessionTime(readDuration());
+			accountData.setLastSessionTimeUpdate(readInstant());
+
+			int numLastOffers = readSize();
+			for (int i = 0; i < numLastOffers; i++)
+			{
+				int slot = readSignedVarInt();
+				accountData.getLastOffers().put(slot, readOffer());
+			}
+
+			int numItems = readSize();
+			List<FlippingItem> trades = new ArrayList<>(Math.min(numItems, MAX_INITIAL_CAPACITY));
+			for (int i = 0; i < numItems; i++)
+			{
+				trades.add(readItem());
+			}
+			accountData.setTrades(trades);
+			return accountData;
+		}
+
+		private FlippingItem readItem() throws IOException
+		{
+			int itemId = readSignedVarInt();
+			String itemName = readString();
+			int totalGELimit = readSignedVarInt();
+			int marginCheckBuyPrice = readSignedVarInt();
+			int marginCheckSellPrice = readSignedVarInt();
+			Instant marginCheckBuyTime = readInstant();
+			Instant marginCheckSellTime = readInstant();
+			Instant latestBuyTime = readInstant();
+			Instant latestSellTime = readInstant();
+			Instant latestActivityTime = readInstant();
+			int flags = in.readUnsignedByte();
+			HistoryManager history = readHistory();
+			String flippedBy = readString();
+
+			if (itemName == null || flippedBy == null)
+			{
+				throw new IOException("item " + itemId + " is missing its name or who flipped it");
+			}
+
+			return new FlippingItem(itemId, itemName, totalGELimit, marginCheckBuyPrice, marginCheckSellPrice,
+				marginCheckBuyTime, marginCheckSellTime, latestBuyTime, latestSellTime, latestActivityTime,
+				(flags & 1) != 0, (flags & 2) != 0, history, flippedBy);
+		}
+
+		private HistoryManager readHistory() throws IOException
+		{
+			int numSlots = readSize();
+			Map<Integer, List<OfferInfo>> slotHistory = new HashMap<>();
+			for (int i = 0; i < numSlots; i++)
+			{
+				int slot = readSignedVarInt();
+				slotHistory.put(slot, readOffers());
+			}
+			List<OfferInfo> standardizedOffers = readOffers();
+			Instant nextGeLimitRefresh = readInstant();
+			int itemsBoughtThisLimitWindow = readSignedVarInt();
+			ArchivedHistory archivedHistory = version >= ARCHIVED_HISTORY_VERSION ? readArchivedHistory() : null;
+			return new HistoryManager(slotHistory, standardizedOffers, nextGeLimitRefresh, itemsBoughtThisLimitWindow,
+				archivedHistory);
+		}
+
+		private ArchivedHistory readArchivedHistory() throws IOException
+		{
+			if ((in.readUnsignedByte() & 1) == 0)
+			{
+				return null;
+			}
+
+			boolean validFlippingOffer = (in.readUnsignedByte() & 1) != 0;
+			Instant earliestTime = readInstant();
+			int boughtQuantity = readSignedVarInt();
+			long boughtValue = readSignedVarLong();
+			int soldQuantity = readSignedVarInt();
+			long soldValue = readSignedVarLong();
+			int flips = readSignedVarInt();
+			return new ArchivedHistory(earliestTime, boughtQuantity, boughtValue, soldQuantity, soldValue, flips,
+				validFlippingOffer);
+		}
+
+		private List<OfferInfo> readOffers() throws IOException
+		{
+			int numOffers = readSize();
+			List<OfferInfo> offers = new ArrayList<>(Math.min(numOffers, MAX_INITIAL_CAPACITY));
+			for (int i = 0; i < numOffers; i++)
+			{
+				offers.add(readOffer());
+			}
+			return offers;
+		}
+
+		private OfferInfo readOffer() throws IOException
+		{
+			int flags = in.readUnsignedByte();
+			int itemId = readSignedVarInt();
+			int currentQuantityInTrade = readSignedVarInt();
+			int price = readSignedVarInt();
+			Instant time = readInstant();
+			int slot = readSignedVarInt();
+			GrandExchangeOfferState state = readState();
+			int tickArrivedAt = readSignedVarInt();
+			int ticksSinceFirstOffer = readSignedVarInt();
+			int totalQuantityInTrade = readSignedVarInt();
+			int quantitySinceLastOffer = readSignedVarInt();
+			String madeBy = readString();
+
+			return new OfferInfo((flags & 1) != 0, itemId, currentQuantityInTrade, price, time, slot, state,
+				tickArrivedAt, ticksSinceFirstOffer, totalQuantityInTrade, quantitySinceLastOffer, (flags & 2) != 0,
+				(flags & 4) != 0, madeBy);
+		}
+
+		private GrandExchangeOfferState readState() throws IOException
+		{
+			int id = readVarInt();
+			if (id == 0)
+			{
+				return null;
+			}
+			if (id < 0 || id > states.length)
+			{
+				throw new IOException("offer state " + id + " is not in the state table");
+			}
+			return states[id - 1];
+		}
+
+		private Instant readInstant() throws IOException
+		{
+			if (in.readUnsignedByte() == 0)
+			{
+				return null;
+			}
+			long seconds = readSignedVarLong();
+			return Instant.ofEpochSecond(seconds, readVarInt());
+		}
+
+		private Duration readDuration() throws IOException
+		{
+			if (in.readUnsignedByte() == 0)
+			{
+				return null;
+			}
+			long seconds = readSignedVarLong();
+			return Duration.ofSeconds(seconds, readVarInt());
+		}
+
+		private String readString() throws IOException
+		{
+			int id = readVarInt();
+			if (id == 0)
+			{
+				return null;
+			}
+			if (id < 0 || id > strings.length)
+			{
+				throw new IOException("string " + id + " is not in the string table");
+			}
+			return strings[id - 1];
+		}
+
+		/**
+		 * The string is read in chunks, so a corrupt length runs into the end of the file rather than allocating the
+		 * whole length up front.
+		 */
+		private String readRawString() throws IOException
+		{
+			int length = readSize();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.min(length, MAX_INITIAL_CAPACITY));
+			byte[] chunk = new byte[Math.min(length, MAX_INITIAL_CAPACITY)];
+			for (int remaining = length; remaining > 0; remaining -= chunk.length)
+			{
+				int read = Math.min(remaining, chunk.length);
+				in.readFully(chunk, 0, read);
+				bytes.write(chunk, 0, read);
+			}
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Reads the size of a collection or the length of a string, which a corrupt file can make negative.
+		 */
+		private int readSize() throws IOException
+		{
+			int size = readVarInt();
+			if (size < 0)
+			{
+				throw new IOException("negative size " + size);
+			}
+			return size;
+		}
+
+		private int readSignedVarInt() throws IOException
+		{
+			int value = readVarInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		private int readVarInt() throws IOException
+		{
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7)
+			{
+				int b = in.readUnsignedByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+				{
+					return value;
+				}
+			}
+			throw new IOException("malformed varint");
+		}
+
+		private long readSignedVarLong() throws IOException
+		{
+			long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		private long readVarLong() throws IOException
+		{
+			long value = 0;
+			for (int shift = 0; shift < 70; shift += 7)
+			{
+				int b = in.readUnsignedByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+				{
+					return value;
+				}
+			}
+			throw new IOException("malformed varint");
+		}
+	}
+}
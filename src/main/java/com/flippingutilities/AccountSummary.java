@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import com.google.gson.annotations.SerializedName;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A small summary of an account's trade history that is stored next to the account's snapshot. It lets the plugin
+ * list an account, and show what it has been up to, without having to load the account's whole trade history. The
+ * summary reflects the account's snapshot, so offers that are still in its journal aren't counted yet.
+ */
+@Data
+@AllArgsConstructor
+public class AccountSummary
+{
+	@SerializedName("iC")
+	private int itemCount;
+
+	@SerializedName("lA")
+	private Instant lastActivity;
+
+	@SerializedName("p")
+	private long profit;
+
+	//the sequence number of the last journal entry that is part of the snapshot.
+	@SerializedName("jS")
+	private long journalSequence;
+
+	public static AccountSummary of(AccountData accountData)
+	{
+		Instant lastActivity = null;
+		long profit = 0;
+		for (FlippingItem item : accountData.getTrades())
+		{
+			Instant itemActivity = item.getLatestActivityTime();
+			if (itemActivity != null && (lastActivity == null || itemActivity.isAfter(lastActivity)))
+			{
+				lastActivity = itemActivity;
+			}
+			profit += item.getProfit(Instant.EPOCH);
+		}
+		return new AccountSummary(accountData.getTrades().size(), lastActivity, profit, accountData.getJournalSequence());
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The account wide trade list: the items in every account's trade list, with the items of the same name from each
+ * account merged into one. The merged items are kept between builds, so when an item changes only its merged item
+ * is made again, rather than cloning and merging every item of every account each time an offer comes in.
+ */
+class AccountWideList
+{
+	private final Map<String, FlippingItem> mergedItems = new HashMap<>();
+
+	//the ids of the items that went into each merged item, which are usually the same for every account.
+	private final Map<String, Set<Integer>> itemIds = new HashMap<>();
+
+	//the names of the items that changed since the list was last built, or null if every item has to be merged again.
+	private Set<String> changedItems;
+
+	private List<FlippingItem> list = new ArrayList<>();
+
+	/**
+	 * Merges every item again the next time the list is built.
+	 */
+	synchronized void invalidate()
+	{
+		changedItems = null;
+	}
+
+	/**
+	 * Merges the items of the same name as an item that changed again the next time the list is built.
+	 */
+	synchronized void itemChanged(FlippingItem item)
+	{
+		itemIds.computeIfAbsent(item.getItemName(), k -> new HashSet<>()).add(item.getItemId());
+		if (changedItems != null)
+		{
+			changedItems.add(item.getItemName());
+		}
+	}
+
+	synchronized void itemsChanged(Collection<FlippingItem> items)
+	{
+		items.forEach(this::itemChanged);
+	}
+
+	/**
+	 * @param accounts the data of every loaded account
+	 * @return the merged items, most recently traded first
+	 */
+	synchronized List<FlippingItem> build(Collection<AccountData> accounts)
+	{
+		if (changedItems == null)
+		{
+			mergedItems.clear();
+			itemIds.clear();
+			changedItems = new HashSet<>();
+			accounts.forEach(account -> itemsChanged(account.getTrades()));
+		}
+
+		if (changedItems.isEmpty())
+		{
+			return list;
+		}
+
+		for (String itemName : changedItems)
+		{
+			FlippingItem mergedItem = null;
+			for (AccountData account : accounts)
+			{
+				for (int itemId : itemIds.get(itemName))
+				{
+					FlippingItem item = account.findItem(itemId);
+					if (item != null && item.getItemName().equals(itemName))
+					{
+						mergedItem = FlippingItem.merge(mergedItem, item.clone());
+					}
+				}
+			}
+
+			if (mergedItem == null)
+			{
+				mergedItems.remove(itemName);
+				itemIds.remove(itemName);
+			}
+			else
+			{
+				mergedItems.put(itemName, mergedItem);
+			}
+		}
+		changedItems.clear();
+
+		list = new ArrayList<>(mergedItems.values());
+		list.sort(Collections.reverseOrder(Comparator.comparing(FlippingItem::getLatestActivityTime)));
+		return list;
+	}
+}
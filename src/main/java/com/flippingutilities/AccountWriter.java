@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The only thread the data of the accounts in the cache is changed on. Offers, reloads, session time updates and
+ * changes the user makes through the panels are all run on it in the order they were submitted, so the data is never
+ * changed by two threads at once. The panels don't read the trade lists in the cache, they are given copies of the
+ * trade list being viewed which are made on this thread once it has changed.
+ */
+@Slf4j
+public class AccountWriter
+{
+	private final ExecutorService executor;
+
+	private volatile Thread thread;
+
+	public AccountWriter()
+	{
+		this.executor = Executors.newSingleThreadExecutor(r ->
+		{
+			thread = new Thread(r, "flipping-utilities-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Runs a task after every task submitted before it. An exception thrown by the task is logged rather than
+	 * stopping the tasks after it.
+	 */
+	public void execute(Runnable task)
+	{
+		try
+		{
+			executor.execute(() ->
+			{
+				try
+				{
+					task.run();
+				}
+				catch (Exception e)
+				{
+					log.info("unknown exception while changing account data, error = {}", e);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			log.info("the writer has been stopped, dropping a change to the account data");
+		}
+	}
+
+	/**
+	 * Runs a task after every task submitted before it and waits for it to finish, or runs it right away if called
+	 * from the writer's thread.
+	 */
+	public void executeAndWait(Runnable task)
+	{
+		if (isWriterThread())
+		{
+			task.run();
+			return;
+		}
+
+		try
+		{
+			Future<?> future = executor.submit(task);
+			future.get();
+		}
+		catch (RejectedExecutionException | ExecutionException e)
+		{
+			log.info("couldn't change account data, error = {}", e);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public boolean isWriterThread()
+	{
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Runs the tasks that were already submitted and doesn't accept any more.
+	 */
+	public void stop()
+	{
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import com.google.gson.annotations.SerializedName;
+import java.time.Instant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aggregates of the offers of an item that have been moved out of its {@link HistoryManager} and into the account's
+ * archive on disk (see {@link TradePersister#archiveOffers}). Only what is needed to work out the profit, cashflow and
+ * number of flips over the whole history of the item is kept, so the archived offers never have to be read again
+ * for that.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArchivedHistory
+{
+	//the time of the earliest archived offer. The archive is only included in an interval that starts before it.
+	@SerializedName("eT")
+	private Instant earliestTime;
+
+	@SerializedName("bQ")
+	private int boughtQuantity;
+
+	@SerializedName("bV")
+	private long boughtValue;
+
+	@SerializedName("sQ")
+	private int soldQuantity;
+
+	@SerializedName("sV")
+	private long soldValue;
+
+	@SerializedName("f")
+	private int flips;
+
+	//whether any of the archived offers was still valid for the flipping panel, which keeps the item around in the
+	//trade list even if all of its offers are archived.
+	@SerializedName("vF")
+	private boolean validFlippingOffer;
+
+	/**
+	 * Folds offers into the aggregates.
+	 *
+	 * @param offers the standardized offers that are being archived
+	 * @param flips  the number of flips that were made out of those offers
+	 */
+	public void add(List<OfferInfo> offers, int flips)
+	{
+		for (OfferInfo offer : offers)
+		{
+			if (earliestTime == null || offer.getTime().isBefore(earliestTime))
+			{
+				earliestTime = offer.getTime();
+			}
+
+			validFlippingOffer |= offer.isValidFlippingOffer();
+
+			if (!offer.isValidStatOffer())
+			{
+				continue;
+			}
+
+			if (offer.isBuy())
+			{
+				boughtQuantity += offer.getQuantitySinceLastOffer();
+				boughtValue += (long) offer.getQuantitySinceLastOffer() * offer.getPrice();
+			}
+			else
+			{
+				soldQuantity += offer.getQuantitySinceLastOffer();
+				soldValue += (long) offer.getQuantitySinceLastOffer() * offer.getPrice();
+			}
+		}
+		this.flips += flips;
+	}
+
+	public boolean hasValidStatOffers()
+	{
+		return boughtQuantity > 0 || soldQuantity > 0;
+	}
+
+	public void invalidateStatOffers()
+	{
+		boughtQuantity = 0;
+		boughtValue = 0;
+		soldQuantity = 0;
+		soldValue = 0;
+		flips = 0;
+	}
+
+	public ArchivedHistory clone()
+	{
+		return new ArchivedHistory(earliestTime, boughtQuantity, boughtValue, soldQuantity, soldValue, flips,
+			validFlippingOffer);
+	}
+
+	/**
+	 * Merges the archives of the same item from different accounts, used when building the account wide trade list.
+	 */
+	public static ArchivedHistory merge(ArchivedHistory archive1, ArchivedHistory archive2)
+	{
+		if (archive1 == null || archive2 == null)
+		{
+			return archive1 == null ? archive2 : archive1;
+		}
+
+		ArchivedHistory merged = archive1.clone();
+		if (archive2.earliestTime != null && (merged.earliestTime == null || archive2.earliestTime.isBefore(merged.earliestTime)))
+		{
+			merged.earliestTime = archive2.earliestTime;
+		}
+		merged.boughtQuantity += archive2.boughtQuantity;
+		merged.boughtValue += archive2.boughtValue;
+		merged.soldQuantity += archive2.soldQuantity;
+		merged.soldValue += archive2.soldValue;
+		merged.flips += archive2.flips;
+		merged.validFlippingOffer |= archive2.validFlippingOffer;
+		return merged;
+	}
+}
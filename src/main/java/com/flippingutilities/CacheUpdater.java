@@ -99,7 +99,7 @@ public class CacheUpdater
 
 			WatchService watchService = FileSystems.getDefault().newWatchService();
 
-			Path path = TradePersister.PARENT_DIRECTORY.toPath();
+			Path path = TradePersister.getParentDirectory().toPath();
 
 			path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
 
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Makes the flips of an item's offers as the offers come in, rather than matching every offer again each time the
+ * flips are shown. The offers of each account are matched the same way {@link HistoryManager#createFlips(List)}
+ * matches them: buy margin checks are paired with a sell margin check made within a minute after them, and the rest
+ * of the completed offers are combined into flips, first in first out. The offers have to be added in time order.
+ */
+class FlipMatcher
+{
+	//a buy margin check is only paired with a sell margin check made within this long after it.
+	private static final long MARGIN_CHECK_WINDOW_MILLIS = 60000;
+
+	//the flips made so far, in the order of their time.
+	private final List<Flip> flips = new ArrayList<>();
+
+	//a running count of the flips that are counted in the stats: countedFlips[i] is how many of the first i flips are.
+	//flips are almost always added at the end, so keeping it up to date rarely takes more than a step.
+	private int[] countedFlips = new int[16];
+
+	private final Map<String, AccountOffers> accountOffers = new HashMap<>();
+
+	/**
+	 * Matches an offer against the offers added before it, adding any flips it completes. Offers that don't count
+	 * towards the stats or that aren't the last offer of a trade are ignored.
+	 */
+	void add(OfferInfo offer)
+	{
+		if (!offer.isValidStatOffer() || !offer.isComplete())
+		{
+			return;
+		}
+
+		accountOffers.computeIfAbsent(offer.getMadeBy(), k -> new AccountOffers(this::addFlip)).add(offer);
+	}
+
+	/**
+	 * @param earliestTime the time after which flips are returned
+	 * @return the flips made after earliestTime, most recent first
+	 */
+	List<Flip> getFlips(Instant earliestTime)
+	{
+		List<Flip> result = new ArrayList<>(flips.subList(firstFlipAfter(earliestTime), flips.size()));
+
+		//sells that are waiting on a buy margin check which may still be paired are matched as if it won't be, like
+		//they would be if all the offers were matched at once. This is done on a copy so the buy margin check can
+		//still be paired if a sell margin check comes in for it.
+		boolean addedFlips = false;
+		for (AccountOffers offers : accountOffers.values())
+		{
+			if (offers.isWaitingOnMarginCheck())
+			{
+				offers.copy(flip ->
+				{
+					if (flip.getTime().isAfter(earliestTime))
+					{
+						result.add(flip);
+					}
+				}).settleAll();
+				addedFlips = true;
+			}
+		}
+
+		if (addedFlips)
+		{
+			result.sort(Comparator.comparing(Flip::getTime));
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * Counts the flips made after earliestTime that aren't margin checks, without creating the list of them.
+	 *
+	 * @param earliestTime the time after which flips are counted
+	 * @return the amount of flips counted in the stats
+	 */
+	int countFlips(Instant earliestTime)
+	{
+		int[] count = {countedFlips[flips.size()] - countedFlips[firstFlipAfter(earliestTime)]};
+
+		//as in getFlips, sells waiting on a buy margin check are matched as if it won't be paired
+		for (AccountOffers offers : accountOffers.values())
+		{
+			if (offers.isWaitingOnMarginCheck())
+			{
+				offers.copy(flip ->
+				{
+					if (isCounted(flip) && flip.getTime().isAfter(earliestTime))
+					{
+						count[0]++;
+					}
+				}).settleAll();
+			}
+		}
+
+		return count[0];
+	}
+
+	private static boolean isCounted(Flip flip)
+	{
+		return flip.getQuantity() != 0 && !flip.isMarginCheck();
+	}
+
+	private int firstFlipAfter(Instant time)
+	{
+		int low = 0;
+		int high = flips.size();
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (flips.get(mid).getTime().isAfter(time))
+			{
+				high = mid;
+			}
+			else
+			{
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	//a sell can wait for buys that come in after it, so flips aren't always made in the order of their time.
+	private void addFlip(Flip flip)
+	{
+		int index = firstFlipAfter(flip.getTime());
+		flips.add(index, flip);
+
+		if (countedFlips.length <= flips.size())
+		{
+			countedFlips = Arrays.copyOf(countedFlips, countedFlips.length * 2);
+		}
+		for (int i = index; i < flips.size(); i++)
+		{
+			countedFlips[i + 1] = countedFlips[i] + (isCounted(flips.get(i)) ? 1 : 0);
+		}
+	}
+
+	/**
+	 * A buy and how many of its items haven't been matched with a sell yet.
+	 */
+	private static class Buy
+	{
+		private final OfferInfo offer;
+		private int quantity;
+		//whether it's a buy margin check that may still be paired with a sell margin check, in which case no sell
+		//can be matched with it or any buy after it yet.
+		private boolean pending;
+
+		Buy(OfferInfo offer)
+		{
+			this.offer = offer;
+			this.quantity = offer.getCurrentQuantityInTrade();
+			this.pending = offer.isMarginCheck();
+		}
+
+		Buy(Buy buy)
+		{
+			this.offer = buy.offer;
+			this.quantity = buy.quantity;
+			this.pending = buy.pending;
+		}
+	}
+
+	/**
+	 * The matching state of the offers made by one account, as offers from different accounts aren't matched.
+	 */
+	private static class AccountOffers
+	{
+		private final Consumer<Flip> flipConsumer;
+		private final ArrayDeque<Buy> pendingMarginChecks = new ArrayDeque<>();
+		private final ArrayDeque<Buy> buys = new ArrayDeque<>();
+		private final ArrayDeque<OfferInfo> sells = new ArrayDeque<>();
+
+		//how many items of the buys have been matched with the first sell so far, and what they cost.
+		private int quantitySeen;
+		private long valueSeen;
+
+		AccountOffers(Consumer<Flip> flipConsumer)
+		{
+			this.flipConsumer = flipConsumer;
+		}
+
+		AccountOffers copy(Consumer<Flip> flipConsumer)
+		{
+			AccountOffers copy = new AccountOffers(flipConsumer);
+			for (Buy buy : buys)
+			{
+				Buy buyCopy = new Buy(buy);
+				copy.buys.add(buyCopy);
+				if (buyCopy.pending)
+				{
+					copy.pendingMarginChecks.add(buyCopy);
+				}
+			}
+			copy.sells.addAll(sells);
+			copy.quantitySeen = quantitySeen;
+			copy.valueSeen = valueSeen;
+			return copy;
+		}
+
+		boolean isWaitingOnMarginCheck()
+		{
+			return !sells.isEmpty() && !pendingMarginChecks.isEmpty();
+		}
+
+		void add(OfferInfo offer)
+		{
+			settle(offer.getTime());
+
+			if (offer.isBuy())
+			{
+				Buy buy = new Buy(offer);
+				if (buy.pending)
+				{
+					pendingMarginChecks.add(buy);
+				}
+				buys.add(buy);
+			}
+			else if (!offer.isMarginCheck() || !pairMarginCheck(offer))
+			{
+				sells.add(offer);
+			}
+
+			matchSells();
+		}
+
+		/**
+		 * Buy margin checks that weren't followed by a sell margin check within a minute of them are matched like
+		 * any other buy.
+		 */
+		private void settle(Instant time)
+		{
+			while (!pendingMarginChecks.isEmpty() &&
+				Duration.between(pendingMarginChecks.peekFirst().offer.getTime(), time).toMillis() >= MARGIN_CHECK_WINDOW_MILLIS)
+			{
+				pendingMarginChecks.removeFirst().pending = false;
+			}
+			matchSells();
+		}
+
+		/**
+		 * Matches every buy margin check like any other buy, as they would be if no more offers came in.
+		 */
+		void settleAll()
+		{
+			pendingMarginChecks.forEach(buy -> buy.pending = false);
+			pendingMarginChecks.clear();
+			matchSells();
+		}
+
+		private boolean pairMarginCheck(OfferInfo sell)
+		{
+			Buy buy = pendingMarginChecks.peekFirst();
+			if (buy == null || sell.getTime().isBefore(buy.offer.getTime()))
+			{
+				return false;
+			}
+
+			pendingMarginChecks.removeFirst();
+			buys.remove(buy);
+			flipConsumer.accept(new Flip(buy.offer.getPrice(), sell.getPrice(), sell.getCurrentQuantityInTrade(), sell.getTime(), sell.isMarginCheck()));
+			return true;
+		}
+
+		private void matchSells()
+		{
+			while (!sells.isEmpty() && !buys.isEmpty() && !buys.peekFirst().pending)
+			{
+				OfferInfo sell = sells.peekFirst();
+				Buy buy = buys.peekFirst();
+				quantitySeen += buy.quantity;
+
+				if (quantitySeen >= sell.getCurrentQuantityInTrade())
+				{
+					int leftOver = quantitySeen - sell.getCurrentQuantityInTrade();
+					valueSeen += (long) (buy.quantity - leftOver) * buy.offer.getPrice();
+					buy.quantity = leftOver;
+
+					int quantity = sell.getCurrentQuantityInTrade();
+					int buyPrice = quantity == 0 ? 0 : (int) (valueSeen / quantity);
+					flipConsumer.accept(new Flip(buyPrice, sell.getPrice(), quantity, sell.getTime(), sell.isMarginCheck() && buy.offer.isMarginCheck()));
+
+					sells.removeFirst();
+					quantitySeen = 0;
+					valueSeen = 0;
+				}
+				else
+				{
+					valueSeen += (long) buy.quantity * buy.offer.getPrice();
+					buys.removeFirst();
+				}
+			}
+		}
+	}
+}
@@ -41,6 +41,12 @@ public interface FlippingConfig extends Config
 		BOLD_FONT
 	}
 
+	enum StorageFormat
+	{
+		JSON,
+		BINARY
+	}
+
 	@ConfigItem(
 		keyName = "outOfDateWarning",
 		name = "Set how long before prices are outdated",
@@ -103,4 +109,75 @@ public interface FlippingConfig extends Config
 		return Fonts.SMALL_FONT;
 	}
 
+	@ConfigItem(
+		keyName = "journalTrades",
+		name = "Save offers incrementally",
+		description = "Appends each new offer to a journal instead of rewriting your whole trade history until you log out"
+	)
+	default boolean journalTrades()
+	{
+		return true;
+	}
+
+	@ConfigItem(
+		keyName = "storageFormat",
+		name = "Trade history file format",
+		description = "Binary files are much smaller and faster to load, json files can be read by other tools"
+	)
+	default StorageFormat storageFormat()
+	{
+		return StorageFormat.JSON;
+	}
+
+	@ConfigItem(
+		keyName = "compressSnapshots",
+		name = "Compress trade history files",
+		description = "Stores your trade history in much smaller gzip compressed files"
+	)
+	default boolean compressSnapshots()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "shardedStorage",
+		name = "Store items separately",
+		description = "Splits your trade history into many small files so saving only rewrites the items that changed"
+	)
+	default boolean shardedStorage()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "lazyAccountLoading",
+		name = "Load other accounts on demand",
+		description = "Only loads the trade history of an account when you view it, takes effect on restart"
+	)
+	default boolean lazyAccountLoading()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "flushInterval",
+		name = "Save changes every",
+		description = "How often new offers are written to disk in the background"
+	)
+	@Units(Units.SECONDS)
+	default int flushInterval()
+	{
+		return 10;
+	}
+
+	@ConfigItem(
+		keyName = "archiveAfterDays",
+		name = "Archive offers older than (days)",
+		description = "Moves offers older than this many days (31 at least) out of memory on login, 0 to never archive"
+	)
+	default int archiveAfterDays()
+	{
+		return 0;
+	}
+
 }
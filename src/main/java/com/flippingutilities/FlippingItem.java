@@ -203,14 +203,19 @@ public class FlippingItem
 			return item2;
 		}
 
+		ArchivedHistory mergedArchive = ArchivedHistory.merge(item1.getHistory().getArchivedHistory(),
+			item2.getHistory().getArchivedHistory());
+
 		if (item1.getLatestActivityTime().compareTo(item2.getLatestActivityTime()) >= 0)
 		{
-			item1.getHistory().getStandardizedOffers().addAll(item2.getHistory().getStandardizedOffers());
+			item1.getHistory().addOffers(item2.getHistory());
+			item1.getHistory().setArchivedHistory(mergedArchive);
 			return item1;
 		}
 		else
 		{
-			item2.getHistory().getStandardizedOffers().addAll(item1.getHistory().getStandardizedOffers());
+			item2.getHistory().addOffers(item1.getHistory());
+			item2.getHistory().setArchivedHistory(mergedArchive);
 			return item2;
 		}
 
@@ -229,7 +234,12 @@ public class FlippingItem
 
 	public long getCashflow(Instant earliestTime, boolean getExpense)
 	{
-		return history.getCashflow(getIntervalHistory(earliestTime), getExpense);
+		return history.getCashflow(earliestTime, getExpense);
+	}
+
+	public long getProfit(Instant earliestTime)
+	{
+		return history.getProfit(earliestTime);
 	}
 
 	public int countItemsFlipped(List<OfferInfo> tradeList)
@@ -237,11 +247,26 @@ public class FlippingItem
 		return history.countItemsFlipped(tradeList);
 	}
 
+	public int countItemsFlipped(Instant earliestTime)
+	{
+		return history.countItemsFlipped(earliestTime);
+	}
+
+	public int countFlips(Instant earliestTime)
+	{
+		return history.countFlips(earliestTime);
+	}
+
 	public ArrayList<OfferInfo> getIntervalHistory(Instant earliestTime)
 	{
 		return history.getIntervalsHistory(earliestTime);
 	}
 
+	public Instant getLastTradeTime(Instant earliestTime)
+	{
+		return history.getLastTradeTime(earliestTime);
+	}
+
 	public int remainingGeLimit()
 	{
 		return totalGELimit - history.getItemsBoughtThisLimitWindow();
@@ -280,9 +305,9 @@ public class FlippingItem
 		history.invalidateOffers(panelSelection);
 	}
 
-	public void invalidateOffers(HistoryManager.PanelSelection panelSelection, ArrayList<OfferInfo> offerList)
+	public void invalidateOffers(HistoryManager.PanelSelection panelSelection, Instant earliestTime)
 	{
-		history.invalidateOffers(panelSelection, offerList);
+		history.invalidateOffers(panelSelection, earliestTime);
 	}
 
 	//generated to string from intellij. I made it not create a representation of the history cause it would be too
@@ -41,14 +41,18 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import javax.inject.Inject;
+import javax.swing.SwingUtilities;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -94,8 +98,17 @@ public class FlippingPlugin extends Plugin
 	public static final String CONFIG_GROUP = "flipping";
 	public static final String ITEMS_CONFIG_KEY = "items";
 	public static final String TIME_INTERVAL_CONFIG_KEY = "selectedinterval";
+	public static final String COMPRESS_CONFIG_KEY = "compressSnapshots";
+	public static final String SHARDED_CONFIG_KEY = "shardedStorage";
 	public static final String ACCOUNT_WIDE = "Accountwide";
 
+	//offers are only archived once they are older than the longest time interval of the stats panel other than "All",
+	//as the archive only keeps aggregates over all of its offers.
+	private static final int MIN_ARCHIVE_AGE_DAYS = 31;
+
+	//far more than the offers that come in at once on login, so the client thread never has to wait on the writer.
+	private static final int OFFER_QUEUE_CAPACITY = 512;
+
 	@Inject
 	private Client client;
 	@Inject
@@ -135,39 +148,63 @@ public class FlippingPlugin extends Plugin
 	private boolean previouslyLoggedIn;
 
 	//hold all account data associated with an account. This account data includes the account's trade history and
-	//last offers for every slot (this is to help deduplicate incoming offers)
-	@Getter
-	private Map<String, AccountData> accountCache = new HashMap<>();
+	//last offers for every slot (this is to help deduplicate incoming offers). It is only changed on the writer's thread.
+	private Map<String, AccountData> accountCache = new ConcurrentHashMap<>();
+
+	//every change to the data in the cache is made on this thread, see AccountWriter.
+	private AccountWriter accountWriter;
+
+	//hands offers over from the client thread to the writer.
+	private OfferQueue offerQueue;
+
+	//when accounts are loaded on demand, this holds the summaries of the accounts whose data hasn't been loaded into
+	//the cache yet.
+	private Map<String, AccountSummary> unloadedAccounts = new ConcurrentHashMap<>();
 
 	//the display name of the account whose trade list the user is currently looking at as selected
 	//through the dropdown menu
-	private String accountCurrentlyViewed = ACCOUNT_WIDE;
+	private volatile String accountCurrentlyViewed = ACCOUNT_WIDE;
 
 	//the display name of the currently logged in user. This is the only account that can actually receive offers
 	//as this is the only account currently logged in.
 	@Getter
-	private String currentlyLoggedInAccount;
+	private volatile String currentlyLoggedInAccount;
 
 	//some events come before a display name has been retrieved and since a display name is crucial for figuring out
 	//which account's trade list to add to, we queue the events here to be processed as soon as a display name is set.
 	private List<GrandExchangeOfferChanged> eventsBeforeNameSet = new ArrayList<>();
 
-	//building the account wide trade list is an expensive operation so we store it in this variable and only recompute
-	//it if we have gotten an update since the last account wide trade list build.
-	boolean updateSinceLastAccountWideBuild = true;
-	List<FlippingItem> prevBuiltAccountWideList;
+	//building the account wide trade list is an expensive operation so its merged items are kept and only the ones
+	//of the items that changed since the last build are merged again.
+	private final AccountWideList accountWideList = new AccountWideList();
+
+	//the copies of the loaded accounts' trade lists which the panels are given, only used on the writer's thread.
+	private final Map<String, TradeListCopy> tradeListCopies = new HashMap<>();
+
+	//the copy of the trade list the user is currently looking at. It is replaced rather than changed when the trades
+	//change, so the panels can read it from any thread.
+	private volatile List<FlippingItem> tradesForCurrentView = Collections.emptyList();
 
 	//updates the cache by monitoring the directory and loading a file's contents into the cache if it has been changed
 	private CacheUpdater cacheUpdater;
 
+	//folds the logged in account's journal into its snapshot in the background
+	private JournalCompactor journalCompactor;
+
+	//writes new offers to disk in the background
+	private TradeFlusher tradeFlusher;
+
 	private Instant startUpTime = Instant.now();
 
 	//name of the account this client last stored trades for.
-	private String thisClientLastStored;
+	private volatile String thisClientLastStored;
 
 	@Override
 	protected void startUp()
 	{
+		accountWriter = new AccountWriter();
+		offerQueue = new OfferQueue(OFFER_QUEUE_CAPACITY, accountWriter::execute, this::applyOffers);
+
 		//Main visuals.
 		flippingPanel = new FlippingPanel(this, itemManager, executor);
 		statPanel = new StatsPanel(this, itemManager);
@@ -195,8 +232,8 @@ public class FlippingPlugin extends Plugin
 					return false;
 			}
 
-			accountCache = setupCache();
 			setupAccSelectorDropdown();
+			setupCache();
 
 			//sets which time interval for the stats tab will be displayed on startup
 			String lastSelectedInterval = configManager.getConfiguration(CONFIG_GROUP, TIME_INTERVAL_CONFIG_KEY);
@@ -206,6 +243,13 @@ public class FlippingPlugin extends Plugin
 			cacheUpdater.registerCallback(this::onDirectoryUpdate);
 			cacheUpdater.start();
 
+			journalCompactor = new JournalCompactor(() -> currentlyLoggedInAccount);
+			journalCompactor.start();
+
+			tradeFlusher = new TradeFlusher(config::flushInterval, accountWriter::execute, accountCache::get,
+				config::storageFormat);
+			tradeFlusher.start();
+
 			repeatingTasks = setupRepeatingTasks();
 
 			//this is only relevant if the user downloads/enables the plugin after they login.
@@ -229,11 +273,19 @@ public class FlippingPlugin extends Plugin
 
 		cacheUpdater.stop();
 
-		if (currentlyLoggedInAccount != null)
+		journalCompactor.stop();
+
+		tradeFlusher.stop();
+
+		String displayName = currentlyLoggedInAccount;
+		if (displayName != null)
 		{
 			log.info("Shutting down, saving trades!");
-			storeTrades(currentlyLoggedInAccount);
+			//waits for the changes queued before this so they are stored as well
+			accountWriter.executeAndWait(() -> storeTrades(displayName));
 		}
+
+		accountWriter.stop();
 	}
 
 	@Subscribe
@@ -306,60 +358,196 @@ public class FlippingPlugin extends Plugin
 		}
 
 		log.info("{} has just logged in!", displayName);
-		if (!accountCache.containsKey(displayName))
+		currentlyLoggedInAccount = displayName;
+
+		//the offers are applied on the writer after this, so the account is always in the cache by then.
+		accountWriter.execute(() ->
 		{
-			log.info("cache does not contain data for {}", displayName);
-			accountCache.put(displayName, new AccountData());
-			masterPanel.getAccountSelector().addItem(displayName);
-		}
+			loadAccountIfNeeded(displayName);
+			reloadIfBehind(displayName);
+			if (!accountCache.containsKey(displayName))
+			{
+				log.info("cache does not contain data for {}", displayName);
+				accountCache.put(displayName, new AccountData());
+				masterPanel.getAccountSelector().addItem(displayName);
+			}
 
-		currentlyLoggedInAccount = displayName;
+			archiveOldOffers(displayName);
+
+			if (getAccountsWithHistory().size() > 1)
+			{
+				masterPanel.getAccountSelector().setVisible(true);
+			}
+			accountCurrentlyViewed = displayName;
+
+			//an account logging in for the first time is only in the selector once it has been added above. Selecting
+			//it will cause changeView to be invoked which will cause a rebuild of flipping and stats panel
+			SwingUtilities.invokeLater(() -> masterPanel.getAccountSelector().setSelectedItem(displayName));
+		});
 
 		//now that we have a display name we can process any events that we received before the display name
 		//was set.
 		eventsBeforeNameSet.forEach(this::onGrandExchangeOfferChanged);
 		eventsBeforeNameSet.clear();
+	}
+
+	/**
+	 * Loads an account again if another client journaled offers for it that aren't in the cache, which happens when
+	 * that client closed before it could store a snapshot or when this client missed the snapshot being replaced.
+	 * Only called on the writer's thread, before anything is journaled for the account.
+	 *
+	 * @param displayName the display name of the account that just logged in
+	 */
+	private void reloadIfBehind(String displayName)
+	{
+		AccountData cached = accountCache.get(displayName);
+		if (cached == null)
+		{
+			return;
+		}
 
-		if (accountCache.keySet().size() > 1)
+		try
 		{
-			masterPanel.getAccountSelector().setVisible(true);
+			if (TradePersister.latestJournalSequence(displayName) <= cached.getJournalSequence())
+			{
+				return;
+			}
+		}
+		catch (IOException e)
+		{
+			log.info("couldn't check whether the data for {} is up to date, e = " + e, displayName);
+			return;
 		}
-		accountCurrentlyViewed = displayName;
-		//this will cause changeView to be invoked which will cause a rebuild of
-		//flipping and stats panel
-		masterPanel.getAccountSelector().setSelectedItem(displayName);
 
+		log.info("the data for {} on disk is ahead of the cache, loading it again", displayName);
+		accountCache.put(displayName, reloadTrades(displayName));
+		//items that are no longer in the reloaded data have to be merged again as well
+		accountWideList.itemsChanged(cached.getTrades());
+		itemsChanged(displayName, accountCache.get(displayName).getTrades());
 	}
 
 	public void handleLogout()
 	{
-		log.info("{} is logging out", currentlyLoggedInAccount);
-		accountCache.get(currentlyLoggedInAccount).setLastSessionTimeUpdate(null);
-		storeTrades(currentlyLoggedInAccount);
+		String displayName = currentlyLoggedInAccount;
+		log.info("{} is logging out", displayName);
 		currentlyLoggedInAccount = null;
+		accountWriter.execute(() ->
+		{
+			accountCache.get(displayName).setLastSessionTimeUpdate(null);
+			storeTrades(displayName);
+		});
 	}
 
-	private Map<String, AccountData> setupCache()
+	/**
+	 * Loads every account into the cache. Accounts are parsed concurrently and each one is merged into the cache and
+	 * shown in the panel as soon as it is parsed, so this returns after roughly the time it takes to load the largest
+	 * account rather than all of them.
+	 */
+	private void setupCache()
 	{
 		try
 		{
 			log.info("initiating load on startup");
-			TradePersister.setup();
-			Map<String, AccountData> accountsData = loadAllTrades();
-			accountsData.values().forEach(AccountData::startNewSession);
-			return accountsData;
+			TradePersister.setCompressSnapshots(config.compressSnapshots());
+			TradePersister.setShardedStorage(config.shardedStorage());
+			TradePersister.setup(config.storageFormat());
+			if (config.lazyAccountLoading())
+			{
+				setupUnloadedAccounts();
+				return;
+			}
+			TradePersister.loadAllTrades((displayName, accountData) -> accountWriter.execute(() ->
+			{
+				accountData.startNewSession();
+				accountCache.put(displayName, accountData);
+				onAccountLoaded(displayName);
+			}));
+			log.info("successfully loaded trades");
 		}
 
 		catch (IOException e)
 		{
-			log.info("error while loading history, setting accountCache to a blank hashmap for now, e = {}", e);
-			return new HashMap<>();
+			log.info("error while loading history, continuing with the accounts that did load, e = {}", e);
 		}
 	}
 
+	/**
+	 * Only loads the summaries of the accounts, their data is loaded into the cache once it is needed (see
+	 * {@link #loadAccountIfNeeded}). The accounts are listed in the account selector with the most recently active
+	 * ones first.
+	 */
+	private void setupUnloadedAccounts() throws IOException
+	{
+		unloadedAccounts.putAll(TradePersister.loadAllSummaries());
+		List<String> displayNames = new ArrayList<>(unloadedAccounts.keySet());
+		displayNames.sort(Comparator.comparing((String displayName) -> unloadedAccounts.get(displayName).getLastActivity(),
+			Comparator.nullsFirst(Comparator.naturalOrder())).reversed());
+		displayNames.forEach(displayName -> masterPanel.getAccountSelector().addItem(displayName));
+		masterPanel.getAccountSelector().setVisible(displayNames.size() > 1);
+		log.info("loaded summaries for {} accounts", displayNames.size());
+	}
+
+	/**
+	 * Loads the data of an account into the cache if only its summary has been loaded so far. Only called on the
+	 * writer's thread.
+	 *
+	 * @param displayName the display name of the account whose data is needed
+	 */
+	private void loadAccountIfNeeded(String displayName)
+	{
+		if (!unloadedAccounts.containsKey(displayName))
+		{
+			return;
+		}
+
+		log.info("loading data for {} on demand", displayName);
+		AccountData accountData = loadTrades(displayName);
+		accountData.startNewSession();
+		accountCache.put(displayName, accountData);
+		unloadedAccounts.remove(displayName);
+		itemsChanged(displayName, accountData.getTrades());
+	}
+
+	/**
+	 * Moves the offers of an account that are older than the configured age into its archive, so they no longer
+	 * have to be kept in memory or rewritten every time the account is saved.
+	 *
+	 * @param displayName the display name of the account whose old offers should be archived
+	 */
+	private void archiveOldOffers(String displayName)
+	{
+		if (config.archiveAfterDays() <= 0)
+		{
+			return;
+		}
+
+		Instant cutoff = Instant.now().minus(Math.max(config.archiveAfterDays(), MIN_ARCHIVE_AGE_DAYS), ChronoUnit.DAYS);
+		try
+		{
+			if (TradePersister.archiveOffers(displayName, accountCache.get(displayName), cutoff) > 0)
+			{
+				itemsChanged(displayName, accountCache.get(displayName).getTrades());
+			}
+		}
+		catch (IOException e)
+		{
+			log.info("couldn't archive offers for {}, error = " + e, displayName);
+		}
+	}
+
+	/**
+	 * @return the display names of every account with a trade history, whether its data has been loaded yet or not
+	 */
+	public Set<String> getAccountsWithHistory()
+	{
+		Set<String> displayNames = new HashSet<>(accountCache.keySet());
+		displayNames.addAll(unloadedAccounts.keySet());
+		return displayNames;
+	}
+
 	/**
 	 * sets up the account selector dropdown that lets you change which account's trade list you
-	 * are looking at.
+	 * are looking at. Accounts are added to it as they are loaded (see {@link #onAccountLoaded}).
 	 */
 	private void setupAccSelectorDropdown()
 	{
@@ -367,17 +555,48 @@ public class FlippingPlugin extends Plugin
 		//and flipping panel to rebuild. I think this only happens on the first item you add.
 		masterPanel.getAccountSelector().addItem(ACCOUNT_WIDE);
 
-		accountCache.keySet().forEach(displayName -> masterPanel.getAccountSelector().addItem(displayName));
+		//the account selector dropdown is only made visible once there are > 1 accounts.
+		masterPanel.getAccountSelector().setVisible(false);
+	}
 
-		//sets the account selector dropdown to visible or not depending on whether the config option has been
-		//selected and there are > 1 accounts.
-		if (accountCache.keySet().size() > 1)
+	/**
+	 * Makes an account that was just put in the cache show up in the account selector, and rebuilds the panels if
+	 * they are showing a view that includes that account.
+	 *
+	 * @param displayName the display name of the account that was loaded into the cache
+	 */
+	private void onAccountLoaded(String displayName)
+	{
+		if (!masterPanel.getViewSelectorItems().contains(displayName))
+		{
+			masterPanel.getAccountSelector().addItem(displayName);
+		}
+
+		if (getAccountsWithHistory().size() > 1)
 		{
 			masterPanel.getAccountSelector().setVisible(true);
 		}
-		else
+
+		itemsChanged(displayName, accountCache.get(displayName).getTrades());
+
+		//rebuild if you are currently looking at the account who's cache just got updated or the account wide view.
+		if (accountCurrentlyViewed.equals(ACCOUNT_WIDE) || accountCurrentlyViewed.equals(displayName))
 		{
-			masterPanel.getAccountSelector().setVisible(false);
+			rebuildCurrentView();
+		}
+	}
+
+	/**
+	 * Marks items of an account as changed, so that they are copied again the next time the panels are given a
+	 * trade list they are in.
+	 */
+	private void itemsChanged(String displayName, Collection<FlippingItem> items)
+	{
+		accountWideList.itemsChanged(items);
+		TradeListCopy tradeListCopy = tradeListCopies.get(displayName);
+		if (tradeListCopy != null)
+		{
+			tradeListCopy.itemsChanged(items);
 		}
 	}
 
@@ -396,7 +615,7 @@ public class FlippingPlugin extends Plugin
 				flippingPanel.updateActivePanelsPriceOutdatedDisplay();
 				flippingPanel.updateActivePanelsGePropertiesDisplay();
 				statPanel.updateTimeDisplay();
-				updateSessionTime();
+				accountWriter.execute(this::updateSessionTime);
 			}
 			catch (Exception e)
 			{
@@ -432,6 +651,9 @@ public class FlippingPlugin extends Plugin
 	 * to update its history (which updates its ge limit/reset time and the profit a user made for that item.
 	 * <p>
 	 * The history of a flipping item is updated in every branch of this method.
+	 * <p>
+	 * Only the offer is created on the client thread, it is queued to be applied to the account's trade list on the
+	 * writer's thread (see {@link OfferQueue}).
 	 *
 	 * @param newOfferEvent the offer event that represents when an offer is updated
 	 *                      (buying, selling, bought, sold, cancelled sell, or cancelled buy)
@@ -447,35 +669,74 @@ public class FlippingPlugin extends Plugin
 
 		OfferInfo newOffer = createOffer(newOfferEvent);
 
-		if (isBadOffer(newOffer))
+		//empty slots are always screened out by isBadOffer, so there is no item to look up for them.
+		if (newOffer.getItemId() == 0 || newOffer.getState() == GrandExchangeOfferState.EMPTY)
 		{
 			return;
 		}
 
-		List<FlippingItem> currentlyLoggedInAccountsTrades = accountCache.get(currentlyLoggedInAccount).getTrades();
+		//item compositions can only be looked up on the client thread.
+		String itemName = itemManager.getItemComposition(newOffer.getItemId()).getName();
+		ItemStats itemStats = itemManager.getItemStats(newOffer.getItemId(), false);
+		int geLimit = itemStats != null ? itemStats.getGeLimit() : 0;
 
-		Optional<FlippingItem> flippingItem = currentlyLoggedInAccountsTrades.stream().
-			filter(item -> item.getItemId() == newOffer.getItemId())
-			.findFirst();
+		offerQueue.add(new OfferQueue.QueuedOffer(newOffer, itemName, geLimit));
+	}
 
-		updateTradesList(currentlyLoggedInAccountsTrades, flippingItem, newOffer.clone());
+	/**
+	 * Applies queued offers to the trade lists of the accounts that made them, in the order they came in, and then
+	 * rebuilds the panels once if they are showing one of those trade lists. Only called on the writer's thread.
+	 *
+	 * @param offers the offers that were queued on the client thread
+	 */
+	private void applyOffers(List<OfferQueue.QueuedOffer> offers)
+	{
+		boolean viewChanged = false;
+		boolean rebuildFlippingPanel = false;
+		for (OfferQueue.QueuedOffer queuedOffer : offers)
+		{
+			OfferInfo newOffer = queuedOffer.getOffer();
+			if (isBadOffer(newOffer))
+			{
+				continue;
+			}
+
+			String displayName = newOffer.getMadeBy();
+			AccountData accountData = accountCache.get(displayName);
+
+			Optional<FlippingItem> flippingItem = Optional.ofNullable(accountData.findItem(newOffer.getItemId()));
+
+			updateTradesList(accountData, flippingItem, newOffer.clone(), queuedOffer.getItemName(), queuedOffer.getGeLimit());
+
+			itemsChanged(displayName, Collections.singletonList(accountData.findItem(newOffer.getItemId())));
 
-		updateSinceLastAccountWideBuild = true;
+			//There is no point rebuilding the panels when the user is looking at the trades list of
+			//another one of their accounts that isn't logged in as that trades list won't be being updated.
+			if (accountCurrentlyViewed.equals(displayName) || accountCurrentlyViewed.equals(ACCOUNT_WIDE))
+			{
+				viewChanged = true;
+				//Only rebuild flipping panel if flipping item is not present as in that case a new panel is added or its
+				//present and the offer is a margin check as that updates the buy/sell price on the item's panel.
+				rebuildFlippingPanel |= !flippingItem.isPresent() || newOffer.isMarginCheck();
+			}
+		}
 
-		//Only rebuild flipping panel if flipping item is not present as in that case a new panel is added or its present
-		//and the offer is a margin check as that updates the buy/sell price on the item's panel.
-		//There is no point rebuilding the panel when the user is looking at the trades list of
-		//another one of their accounts that isn't logged in as that trades list won't be being updated.
-		if ((!flippingItem.isPresent() || flippingItem.isPresent() && newOffer.isMarginCheck()) &&
-			(accountCurrentlyViewed.equals(currentlyLoggedInAccount) || accountCurrentlyViewed.equals(ACCOUNT_WIDE)))
+		if (!viewChanged)
 		{
-			flippingPanel.rebuild(getTradesForCurrentView());
+			return;
 		}
 
-		if (accountCurrentlyViewed.equals(currentlyLoggedInAccount) || accountCurrentlyViewed.equals(ACCOUNT_WIDE))
+		List<FlippingItem> trades = publishCurrentView();
+		if (rebuildFlippingPanel)
 		{
-			statPanel.rebuild(getTradesForCurrentView());
+			flippingPanel.rebuild(trades);
 		}
+		else
+		{
+			//the item panels are still bound to the copies of the items from before the offers
+			flippingPanel.updateActivePanelsGePropertiesDisplay();
+		}
+		statPanel.rebuild(trades);
 	}
 
 	/**
@@ -499,7 +760,7 @@ public class FlippingPlugin extends Plugin
 			return true;
 		}
 
-		Map<Integer, OfferInfo> loggedInAccsLastOffers = accountCache.get(currentlyLoggedInAccount).getLastOffers();
+		Map<Integer, OfferInfo> loggedInAccsLastOffers = accountCache.get(newOffer.getMadeBy()).getLastOffers();
 
 		//this is always the start of any offer (when you first put in an offer), we use these offers to record when an
 		//offer was placed. Then, when an offer completes we can see how many ticks it took, thus determining whether it
@@ -575,82 +836,108 @@ public class FlippingPlugin extends Plugin
 	}
 
 	/**
-	 * This method updates the given trade list in response to an OfferInfo based on whether an item
-	 * that matches what the offer was for already exists and whether the offer was a margin check.
-	 * <p>
-	 * If the offer was a margin check, and the item is present, that item's history and margin need
-	 * to be updated. If the item isn't present, a FlippingItem for the item in that offer and added to the trades
-	 * list.
-	 * <p>
-	 * If the offer was not a margin check and the item was present, just update the history and last traded
-	 * times of the object. (no need to update margins as the offer was not a margin check)
-	 * <p>
-	 * if the offer was not a margin check and the item wasn't present, we don't do anything as there
-	 * is no way to know what to display for the margin checked prices (as it wasn't a margin check) when
-	 * updating the FlippingItem that would have had to be constructed.
+	 * Updates the given account's trade list with the new offer (see {@link AccountData#applyOffer}). If the
+	 * item isn't present in the trade list yet, the name and ge limit that were looked up for it are used to construct
+	 * a FlippingItem for it. If trades are being journaled, the offer is also queued to be appended to the account's
+	 * journal so that it doesn't have to be written along with the rest of the account's history when the account is
+	 * saved. Otherwise the account is marked as changed so that it is stored in the background (see {@link TradeFlusher}).
 	 *
-	 * @param trades       the trades list to update
+	 * @param accountData  the account whose trades list should be updated
 	 * @param flippingItem the flipping item to be updated in the tradeslist, if it even exists
 	 * @param newOffer     new offer that just came in
+	 * @param itemName     the name of the offer's item
+	 * @param geLimit      the ge limit of the offer's item
 	 */
-	private void updateTradesList(List<FlippingItem> trades, Optional<FlippingItem> flippingItem, OfferInfo newOffer)
+	private void updateTradesList(AccountData accountData, Optional<FlippingItem> flippingItem, OfferInfo newOffer,
+								  String itemName, int geLimit)
 	{
 		if (flippingItem.isPresent())
 		{
-			FlippingItem item = flippingItem.get();
-			if (newOffer.isMarginCheck())
-			{
-				trades.remove(item);
-				trades.add(0, item);
-				item.updateMargin(newOffer);
-			}
-			item.updateHistory(newOffer);
-			item.updateLatestTimes(newOffer);
-
+			itemName = flippingItem.get().getItemName();
+			geLimit = flippingItem.get().getTotalGELimit();
+		}
 
+		if (config.journalTrades())
+		{
+			//the offer is cloned as applying it to the trade list mutates it.
+			tradeFlusher.enqueue(newOffer.getMadeBy(),
+				JournalEntry.ofOffer(accountData.nextJournalSequence(), newOffer.clone(), itemName, geLimit));
 		}
 		else
 		{
-			addToTradesList(trades, newOffer);
+			tradeFlusher.markDirty(newOffer.getMadeBy());
 		}
+
+		accountData.applyOffer(newOffer, itemName, geLimit);
 	}
 
 	/**
-	 * Constructs a FlippingItem, the data structure that represents an item the user is currently flipping, and
-	 * adds it to the given tradelist. This method is invoked when we receive a margin check offer for an item that
-	 * isn't currently present in the given trades list.
+	 * gets a copy of the trade list the user is currently looking at. Changes to the trades aren't made to the copy,
+	 * a new copy is made once they have been made instead.
 	 *
-	 * @param tradesList the trades list to be updated
-	 * @param newOffer   the offer to update the trade list with
+	 * @return the trades.
 	 */
-	private void addToTradesList(List<FlippingItem> tradesList, OfferInfo newOffer)
+	public List<FlippingItem> getTradesForCurrentView()
 	{
-		int tradeItemId = newOffer.getItemId();
-		String itemName = itemManager.getItemComposition(tradeItemId).getName();
-
-		ItemStats itemStats = itemManager.getItemStats(tradeItemId, false);
-		int geLimit = itemStats != null ? itemStats.getGeLimit() : 0;
-
-		FlippingItem flippingItem = new FlippingItem(tradeItemId, itemName, geLimit, currentlyLoggedInAccount);
+		return tradesForCurrentView;
+	}
 
-		if (newOffer.isMarginCheck())
+	/**
+	 * Copies the trade list the user is currently looking at for the panels to read. Only the items that changed since
+	 * the trade list was last copied are copied again. Only called on the writer's thread.
+	 *
+	 * @return the copy of the trades.
+	 */
+	private List<FlippingItem> publishCurrentView()
+	{
+		if (accountCurrentlyViewed.equals(ACCOUNT_WIDE))
 		{
-			flippingItem.updateMargin(newOffer);
+			tradesForCurrentView = Collections.unmodifiableList(createAccountWideList());
 		}
-		flippingItem.updateHistory(newOffer);
-		flippingItem.updateLatestTimes(newOffer);
+		else
+		{
+			AccountData accountData = accountCache.get(accountCurrentlyViewed);
+			tradesForCurrentView = accountData == null ? Collections.emptyList() :
+				tradeListCopies.computeIfAbsent(accountCurrentlyViewed, k -> new TradeListCopy()).build(accountData);
+		}
+		return tradesForCurrentView;
+	}
 
-		tradesList.add(0, flippingItem);
+	private void rebuildCurrentView()
+	{
+		List<FlippingItem> trades = publishCurrentView();
+		statPanel.rebuild(trades);
+		flippingPanel.rebuild(trades);
 	}
 
 	/**
-	 * gets the trade list the user is currently looking at
+	 * Makes a change to an item of the trade list the user is currently looking at. The change is made to the panels'
+	 * copy of the item right away and to the item in the account's trade list on the writer's thread.
 	 *
-	 * @return the trades.
+	 * @param item   the panels' copy of the item
+	 * @param change the change to make to the item
 	 */
-	public List<FlippingItem> getTradesForCurrentView()
+	public void changeItem(FlippingItem item, Consumer<FlippingItem> change)
 	{
-		return accountCurrentlyViewed.equals(ACCOUNT_WIDE) ? createAccountWideList() : accountCache.get(accountCurrentlyViewed).getTrades();
+		change.accept(item);
+
+		//the items of the account wide view are merged from every account, so changes to them aren't kept.
+		String displayName = accountCurrentlyViewed;
+		if (displayName.equals(ACCOUNT_WIDE))
+		{
+			return;
+		}
+
+		accountWriter.execute(() ->
+		{
+			AccountData accountData = accountCache.get(displayName);
+			FlippingItem original = accountData == null ? null : accountData.findItem(item.getItemId());
+			if (original != null)
+			{
+				change.accept(original);
+				accountWideList.itemChanged(original);
+			}
+		});
 	}
 
 	/**
@@ -684,10 +971,18 @@ public class FlippingPlugin extends Plugin
 
 	public void handleSessionTimeReset()
 	{
-		if (!accountCurrentlyViewed.equals(ACCOUNT_WIDE))
+		String displayName = accountCurrentlyViewed;
+		if (!displayName.equals(ACCOUNT_WIDE))
 		{
-			accountCache.get(accountCurrentlyViewed).setAccumulatedSessionTime(Duration.ZERO);
-			accountCache.get(accountCurrentlyViewed).setSessionStartTime(Instant.now());
+			accountWriter.execute(() ->
+			{
+				accountCache.get(displayName).setAccumulatedSessionTime(Duration.ZERO);
+				accountCache.get(displayName).setSessionStartTime(Instant.now());
+				if (accountCurrentlyViewed.equals(displayName))
+				{
+					statPanel.rebuild(publishCurrentView());
+				}
+			});
 		}
 	}
 
@@ -753,7 +1048,11 @@ public class FlippingPlugin extends Plugin
 					"an empty AccountData object instead.", displayName);
 				data = new AccountData();
 			}
-			TradePersister.storeTrades(displayName, data);
+			//queued offers have to be in the journal before it is replaced by the snapshot. A snapshot is stored even
+			//when offers are journaled, as other clients only reload an account once its snapshot is replaced (see
+			//onDirectoryUpdate).
+			tradeFlusher.flushJournal(displayName);
+			TradePersister.storeTrades(displayName, data, config.storageFormat());
 			log.info("successfully stored trades for {}", displayName);
 		}
 		catch (IOException e)
@@ -762,18 +1061,20 @@ public class FlippingPlugin extends Plugin
 		}
 	}
 
-	public Map<String, AccountData> loadAllTrades()
+	/**
+	 * Loads an account that another client just stored, only reading what that client changed where possible (see
+	 * {@link TradePersister#reloadTrades}).
+	 */
+	private AccountData reloadTrades(String displayName)
 	{
 		try
 		{
-			Map<String, AccountData> trades = TradePersister.loadAllTrades();
-			log.info("successfully loaded trades");
-			return trades;
+			return TradePersister.reloadTrades(displayName, accountCache.get(displayName));
 		}
 		catch (IOException e)
 		{
-			log.info("couldn't load trades, error: " + e);
-			return new HashMap<>();
+			log.info("couldn't reload trades for {}, e = " + e, displayName);
+			return new AccountData();
 		}
 	}
 
@@ -790,28 +1091,66 @@ public class FlippingPlugin extends Plugin
 		}
 	}
 
+	/**
+	 * Removes the items without any valid offers from the trade list the user is currently looking at on the writer's
+	 * thread, and rebuilds the panels once they have been removed.
+	 */
 	public void truncateTradeList()
 	{
-		List<FlippingItem> currItems = getTradesForCurrentView();
-		currItems.removeIf((item) ->
+		//the account wide view is made from the accounts' trade lists, which it doesn't change.
+		String displayName = accountCurrentlyViewed;
+		if (displayName.equals(ACCOUNT_WIDE))
 		{
-			if (item.getGeLimitResetTime() != null)
-			{
-				Instant startOfRefresh = item.getGeLimitResetTime().minus(4, ChronoUnit.HOURS);
+			return;
+		}
 
-				return !item.hasValidOffers(HistoryManager.PanelSelection.FLIPPING) && !item.hasValidOffers(HistoryManager.PanelSelection.STATS)
-					&& (!Instant.now().isAfter(item.getGeLimitResetTime()) || item.getGeLimitResetTime().isBefore(startOfRefresh));
+		accountWriter.execute(() ->
+		{
+			AccountData accountData = accountCache.get(displayName);
+			if (accountData != null)
+			{
+				accountData.getTrades().removeIf(this::isTruncatable);
+				markForSnapshot(displayName);
+				if (accountCurrentlyViewed.equals(displayName))
+				{
+					rebuildCurrentView();
+				}
 			}
-			return !item.hasValidOffers(HistoryManager.PanelSelection.FLIPPING) && !item.hasValidOffers(HistoryManager.PanelSelection.STATS);
 		});
+	}
 
-		if (!accountCurrentlyViewed.equals(ACCOUNT_WIDE))
+	private boolean isTruncatable(FlippingItem item)
+	{
+		if (item.getGeLimitResetTime() != null)
 		{
-			accountCache.get(accountCurrentlyViewed).setTrades(currItems);
+			Instant startOfRefresh = item.getGeLimitResetTime().minus(4, ChronoUnit.HOURS);
 
+			return !item.hasValidOffers(HistoryManager.PanelSelection.FLIPPING) && !item.hasValidOffers(HistoryManager.PanelSelection.STATS)
+				&& (!Instant.now().isAfter(item.getGeLimitResetTime()) || item.getGeLimitResetTime().isBefore(startOfRefresh));
+		}
+		return !item.hasValidOffers(HistoryManager.PanelSelection.FLIPPING) && !item.hasValidOffers(HistoryManager.PanelSelection.STATS);
+	}
+
+	/**
+	 * Invoked when the trades of the account currently being viewed were changed by the user rather than by an offer.
+	 * Such changes aren't journaled, so the next save of that account needs to store a full snapshot.
+	 */
+	public void markCurrentViewForSnapshot()
+	{
+		String displayName = accountCurrentlyViewed;
+		if (!displayName.equals(ACCOUNT_WIDE))
+		{
+			accountWriter.execute(() -> markForSnapshot(displayName));
 		}
 	}
 
+	private void markForSnapshot(String displayName)
+	{
+		accountCache.get(displayName).setSnapshotRequired(true);
+		//items may have been removed from the trade list as well as changed, so every item is merged again
+		accountWideList.invalidate();
+	}
+
 	/**
 	 * This method is invoked every time a user selects a username from the dropdown at the top of the
 	 * panel. If the username selected does not exist in the cache, it uses loadTradeHistory to load it from
@@ -824,23 +1163,27 @@ public class FlippingPlugin extends Plugin
 	{
 		log.info("changing view to {}", selectedName);
 
-		List<FlippingItem> tradesListToDisplay;
-		if (selectedName.equals(ACCOUNT_WIDE))
-		{
-			flippingPanel.getResetIcon().setVisible(false);
-			statPanel.getResetIcon().setVisible(false);
-			tradesListToDisplay = createAccountWideList();
-		}
-		else
+		boolean accountWide = selectedName.equals(ACCOUNT_WIDE);
+		flippingPanel.getResetIcon().setVisible(!accountWide);
+		statPanel.getResetIcon().setVisible(!accountWide);
+
+		//loading the account and copying its trades is done on the writer's thread rather than the EDT
+		accountWriter.execute(() ->
 		{
-			flippingPanel.getResetIcon().setVisible(true);
-			statPanel.getResetIcon().setVisible(true);
-			tradesListToDisplay = accountCache.get(selectedName).getTrades();
-		}
+			if (!accountWide)
+			{
+				loadAccountIfNeeded(selectedName);
+			}
+			//the account wide view is selected on startup without the user asking for it, so the accounts that
+			//aren't loaded yet are only loaded once the user switches to it from another view.
+			else if (!accountCurrentlyViewed.equals(ACCOUNT_WIDE))
+			{
+				new ArrayList<>(unloadedAccounts.keySet()).forEach(this::loadAccountIfNeeded);
+			}
 
-		accountCurrentlyViewed = selectedName;
-		statPanel.rebuild(tradesListToDisplay);
-		flippingPanel.rebuild(tradesListToDisplay);
+			accountCurrentlyViewed = selectedName;
+			rebuildCurrentView();
+		});
 	}
 
 	/**
@@ -855,6 +1198,24 @@ public class FlippingPlugin extends Plugin
 	{
 		String displayNameOfChangedAcc = fileName.split("\\.")[0];
 
+		//temp files, backups and summaries are only written along with an account's snapshot, which is moved into
+		//place once it has been completely written, so they never need to be reloaded by themselves. Journal appends
+		//aren't reloaded either, as reloading would parse the account's whole history every flush interval. The
+		//journaled offers are picked up once the journal is compacted into a new snapshot or the account logs out,
+		//which stores a snapshot. If neither happened, the account is loaded again when it logs in on this client
+		//(see reloadIfBehind).
+		if (!TradePersister.isSnapshotFile(fileName))
+		{
+			return;
+		}
+
+		//this client is the only one that can be journaling offers for and compacting the account it has logged in, so
+		//the cache for that account is never behind what is on disk.
+		if (displayNameOfChangedAcc.equals(currentlyLoggedInAccount))
+		{
+			return;
+		}
+
 		if (displayNameOfChangedAcc.equals(thisClientLastStored))
 		{
 			log.info("not reloading data for {} into the cache as this client was the last one to store it", displayNameOfChangedAcc);
@@ -862,101 +1223,100 @@ public class FlippingPlugin extends Plugin
 			return;
 		}
 
-		executor.schedule(() ->
+		executor.schedule(() -> accountWriter.execute(() ->
 		{
 			log.info("second has passed, updating cache for {}", displayNameOfChangedAcc);
 
-			accountCache.put(displayNameOfChangedAcc, loadTrades(displayNameOfChangedAcc));
-			if (!masterPanel.getViewSelectorItems().contains(displayNameOfChangedAcc))
+			if (refreshUnloadedAccount(displayNameOfChangedAcc))
 			{
-				masterPanel.getAccountSelector().addItem(displayNameOfChangedAcc);
+				return;
 			}
 
-			if (accountCache.keySet().size() > 1)
+			AccountData previousData = accountCache.put(displayNameOfChangedAcc, reloadTrades(displayNameOfChangedAcc));
+			if (previousData != null)
 			{
-				masterPanel.getAccountSelector().setVisible(true);
+				//items that are no longer in the reloaded data have to be merged again as well
+				accountWideList.itemsChanged(previousData.getTrades());
 			}
+			onAccountLoaded(displayNameOfChangedAcc);
+		}), 1000, TimeUnit.MILLISECONDS);
+	}
 
-			updateSinceLastAccountWideBuild = true;
+	/**
+	 * Reloads the summary of an account if its data hasn't been loaded into the cache, as there is no point in
+	 * loading the account's data before it is needed.
+	 *
+	 * @param displayName the display name of the account whose files changed
+	 * @return whether the account's data wasn't loaded, in which case there's nothing left to update
+	 */
+	private boolean refreshUnloadedAccount(String displayName)
+	{
+		if (!unloadedAccounts.containsKey(displayName))
+		{
+			return false;
+		}
 
-			//rebuild if you are currently looking at the account who's cache just got updated or the account wide view.
-			if (accountCurrentlyViewed.equals(ACCOUNT_WIDE) || accountCurrentlyViewed.equals(displayNameOfChangedAcc))
-			{
-				List<FlippingItem> updatedList = getTradesForCurrentView();
-				flippingPanel.rebuild(updatedList);
-				statPanel.rebuild(updatedList);
-			}
-		}, 1000, TimeUnit.MILLISECONDS);
+		try
+		{
+			unloadedAccounts.put(displayName, TradePersister.loadSummary(displayName));
+		}
+		catch (IOException e)
+		{
+			log.info("couldn't load the summary for {}, e = " + e, displayName);
+		}
+		return true;
 	}
 
 	/**
 	 * creates a view of an "account wide tradelist". An account wide tradelist is just a reflection of the flipping
 	 * items currently in each of the account's tradelists. It does this by merging the flipping items of the same type
-	 * from each account's trade list into one flipping item.
+	 * from each account's trade list into one flipping item. Accounts that haven't been loaded yet (see
+	 * {@link #changeView}) aren't part of it.
 	 *
 	 * @return
 	 */
 	private List<FlippingItem> createAccountWideList()
 	{
-		//since this is an expensive operation, cache its results and only recompute it if there has been an update
-		//to one of the account's tradelists, (updateSinceLastAccountWideBuild is set in onGrandExchangeOfferChanged)
-		if (!updateSinceLastAccountWideBuild)
-		{
-			return prevBuiltAccountWideList;
-		}
-
 		if (accountCache.values().size() == 0)
 		{
 			return new ArrayList<>();
 		}
 
-		//take all flipping items from the account cache, regardless of account, and segregate them based on item name.
-		Map<String, List<FlippingItem>> groupedItems = accountCache.values().stream().
-			flatMap(accountData -> accountData.getTrades().stream()).
-			map(FlippingItem::clone).
-			collect(Collectors.groupingBy(FlippingItem::getItemName));
-
-		//take every list containing flipping items of the same type and reduce it to one merged flipping item and put that
-		//item in a final merged list
-		List<FlippingItem> mergedItems = groupedItems.values().stream().
-			map(list -> list.stream().reduce(FlippingItem::merge)).filter(Optional::isPresent).map(Optional::get).
-			collect(Collectors.toList());
-
-		mergedItems.sort(Collections.reverseOrder(Comparator.comparing(FlippingItem::getLatestActivityTime)));
-
-		updateSinceLastAccountWideBuild = false;
-		prevBuiltAccountWideList = mergedItems;
-		return mergedItems;
-
+		//only the items that changed since the last build are merged again, (they are marked as changed in
+		//onGrandExchangeOfferChanged and when accounts are loaded)
+		return accountWideList.build(accountCache.values());
 	}
 
 	/**
 	 * Decides whether the user is currently flipping or not. To be flipping a user has to be logged in
 	 * and have at least one incomplete offer in the GE
 	 *
+	 * @param loggedInAccountsData the data of the logged in account
 	 * @return whether the user if currently flipping or not
 	 */
-	private boolean currentlyFlipping()
+	private boolean currentlyFlipping(AccountData loggedInAccountsData)
 	{
-		if (currentlyLoggedInAccount == null)
-		{
-			return false;
-		}
-
-		Collection<OfferInfo> lastOffers = accountCache.get(currentlyLoggedInAccount).getLastOffers().values();
+		Collection<OfferInfo> lastOffers = loggedInAccountsData.getLastOffers().values();
 		return lastOffers.stream().anyMatch(offerInfo -> !offerInfo.isComplete());
 	}
 
 	/**
 	 * Calculates and updates the session time display in the statistics tab when a user is viewing
-	 * the "Session" time interval.
+	 * the "Session" time interval. Only called on the writer's thread.
 	 */
 	private void updateSessionTime()
 	{
-		if (currentlyFlipping())
+		String displayName = currentlyLoggedInAccount;
+		AccountData loggedInAccountsData = displayName == null ? null : accountCache.get(displayName);
+		if (loggedInAccountsData == null)
+		{
+			return;
+		}
+
+		if (currentlyFlipping(loggedInAccountsData))
 		{
-			Instant lastSessionTimeUpdate = accountCache.get(currentlyLoggedInAccount).getLastSessionTimeUpdate();
-			Duration accumulatedSessionTime = accountCache.get(currentlyLoggedInAccount).getAccumulatedSessionTime();
+			Instant lastSessionTimeUpdate = loggedInAccountsData.getLastSessionTimeUpdate();
+			Duration accumulatedSessionTime = loggedInAccountsData.getAccumulatedSessionTime();
 			if (lastSessionTimeUpdate == null)
 			{
 				lastSessionTimeUpdate = Instant.now();
@@ -964,35 +1324,49 @@ public class FlippingPlugin extends Plugin
 			long millisSinceLastSessionTimeUpdate = Instant.now().toEpochMilli() - lastSessionTimeUpdate.toEpochMilli();
 			accumulatedSessionTime = accumulatedSessionTime.plus(millisSinceLastSessionTimeUpdate, ChronoUnit.MILLIS);
 			lastSessionTimeUpdate = Instant.now();
-			accountCache.get(currentlyLoggedInAccount).setAccumulatedSessionTime(accumulatedSessionTime);
-			accountCache.get(currentlyLoggedInAccount).setLastSessionTimeUpdate(lastSessionTimeUpdate);
+			loggedInAccountsData.setAccumulatedSessionTime(accumulatedSessionTime);
+			loggedInAccountsData.setLastSessionTimeUpdate(lastSessionTimeUpdate);
 
-			if (accountCurrentlyViewed.equals(ACCOUNT_WIDE) || accountCurrentlyViewed.equals(currentlyLoggedInAccount))
+			if (accountCurrentlyViewed.equals(ACCOUNT_WIDE) || accountCurrentlyViewed.equals(displayName))
 			{
 				statPanel.updateSessionTimeDisplay(getAccumulatedTimeForCurrentView());
 			}
 		}
 
-		else if (currentlyLoggedInAccount != null)
+		else
 		{
-			accountCache.get(currentlyLoggedInAccount).setLastSessionTimeUpdate(null);
+			loggedInAccountsData.setLastSessionTimeUpdate(null);
 		}
 	}
 
 	public void deleteAccount(String displayName)
 	{
-		log.info("deleting all data for {}", displayName);
-		accountCache.remove(displayName);
-		if (accountCurrentlyViewed.equals(displayName))
+		accountWriter.execute(() ->
 		{
-			masterPanel.getAccountSelector().setSelectedItem(accountCache.keySet().toArray()[0]);
-		}
-		TradePersister.deleteFile(displayName + ".json");
-		if (accountCache.keySet().size() < 2)
-		{
-			masterPanel.getAccountSelector().setVisible(false);
-		}
-		masterPanel.getAccountSelector().removeItem(displayName);
+			log.info("deleting all data for {}", displayName);
+			accountCache.remove(displayName);
+			accountWideList.invalidate();
+			tradeListCopies.remove(displayName);
+			unloadedAccounts.remove(displayName);
+			if (accountCurrentlyViewed.equals(displayName))
+			{
+				masterPanel.getAccountSelector().setSelectedItem(getAccountsWithHistory().toArray()[0]);
+			}
+			TradePersister.deleteFile(displayName + TradePersister.SNAPSHOT_EXTENSION);
+			TradePersister.deleteFile(displayName + TradePersister.BINARY_SNAPSHOT_EXTENSION);
+			TradePersister.deleteFile(displayName + TradePersister.SNAPSHOT_EXTENSION + TradePersister.BACKUP_EXTENSION);
+			TradePersister.deleteFile(displayName + TradePersister.BINARY_SNAPSHOT_EXTENSION + TradePersister.BACKUP_EXTENSION);
+			TradePersister.deleteFile(displayName + TradePersister.SEALED_JOURNAL_EXTENSION);
+			TradePersister.deleteFile(displayName + TradePersister.JOURNAL_EXTENSION);
+			TradePersister.deleteFile(displayName + TradePersister.SUMMARY_EXTENSION);
+			TradePersister.deleteShards(displayName);
+			TradePersister.deleteArchive(displayName);
+			if (getAccountsWithHistory().size() < 2)
+			{
+				masterPanel.getAccountSelector().setVisible(false);
+			}
+			masterPanel.getAccountSelector().removeItem(displayName);
+		});
 	}
 
 	@Subscribe
@@ -1006,6 +1380,18 @@ public class FlippingPlugin extends Plugin
 				return;
 			}
 
+			if (event.getKey().equals(COMPRESS_CONFIG_KEY))
+			{
+				TradePersister.setCompressSnapshots(config.compressSnapshots());
+				return;
+			}
+
+			if (event.getKey().equals(SHARDED_CONFIG_KEY))
+			{
+				TradePersister.setShardedStorage(config.shardedStorage());
+				return;
+			}
+
 			statPanel.rebuild(getTradesForCurrentView());
 			flippingPanel.rebuild(getTradesForCurrentView());
 		}
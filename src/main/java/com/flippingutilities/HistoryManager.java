@@ -33,15 +33,14 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -52,7 +51,6 @@ import net.runelite.api.events.GrandExchangeOfferChanged;
  * an item along with tracking how many items they bought since the last ge limit refresh and when the
  * next ge limit refresh for this an item will be.
  */
-@AllArgsConstructor
 @NoArgsConstructor
 public class HistoryManager
 {
@@ -61,15 +59,16 @@ public class HistoryManager
 	//complete (bought/sold/cancelled buy/cancelled sell) comes in, the history for that slot is removed
 	//as the slot is now empty.
 	@SerializedName("sH")
+	@Getter
 	private Map<Integer, List<OfferInfo>> slotHistory = new HashMap<>();
 
 	//a list of standardizedOffers. A standardizedOffer is an offer with a currentQuantityInTrade that represents the
 	//currentQuantityInTrade bought since the last offer. A regular offer just has info from an offerEvent, which gives
 	//you the current currentQuantityInTrade bought/sold overall in the trade.
+	//the offers are kept in the order of their time, so an interval's offers can be found with a binary search, and
+	//are stored a column at a time rather than as an object each (see OfferColumns).
 	@SerializedName("sO")
-	@Getter
-	@Setter
-	private List<OfferInfo> standardizedOffers = new ArrayList<>();
+	private OfferColumns standardizedOffers = new OfferColumns();
 
 	@SerializedName("nGLR")
 	@Getter
@@ -80,6 +79,44 @@ public class HistoryManager
 	@Getter
 	private int itemsBoughtThisLimitWindow;
 
+	//aggregates of the offers that were moved to the account's archive on disk, null if none have been archived.
+	@SerializedName("aH")
+	@Getter
+	@Setter
+	private ArchivedHistory archivedHistory;
+
+	//running totals of the offers, so the stats of an interval are found with a binary search rather than a scan.
+	//Offers almost always come in in time order and are just added to the totals. This is null when the offers
+	//changed in any other way, such as offers from somewhere else being added or the history having just been read
+	//from disk, in which case the offers are put back in time order and the totals rebuilt before the next query.
+	private transient OfferSums offerSums;
+
+	//the flips made from the offers, kept up to date as offers come in. This is null when offers were added out of
+	//time order or changed in a way that affects the flips, in which case it is rebuilt before the flips are next needed.
+	private transient FlipMatcher flipMatcher;
+
+	//the index of the first standardized offer of the trade in progress in each slot, so the trade's offers can be
+	//removed once it completes without searching the offers for them. This is null when it has to be worked out from
+	//the offers again, such as when the history was just read from disk or offers were removed or reordered.
+	private transient Map<Integer, Integer> tradeStarts;
+
+	public HistoryManager(Map<Integer, List<OfferInfo>> slotHistory, List<OfferInfo> standardizedOffers,
+		Instant nextGeLimitRefresh, int itemsBoughtThisLimitWindow, ArchivedHistory archivedHistory)
+	{
+		this(slotHistory, OfferColumns.of(standardizedOffers), nextGeLimitRefresh, itemsBoughtThisLimitWindow,
+			archivedHistory);
+	}
+
+	private HistoryManager(Map<Integer, List<OfferInfo>> slotHistory, OfferColumns standardizedOffers,
+		Instant nextGeLimitRefresh, int itemsBoughtThisLimitWindow, ArchivedHistory archivedHistory)
+	{
+		this.slotHistory = slotHistory;
+		this.standardizedOffers = standardizedOffers;
+		this.nextGeLimitRefresh = nextGeLimitRefresh;
+		this.itemsBoughtThisLimitWindow = itemsBoughtThisLimitWindow;
+		this.archivedHistory = archivedHistory;
+	}
+
 	public enum PanelSelection
 	{
 		FLIPPING,
@@ -95,10 +132,13 @@ public class HistoryManager
 			newSlotHistory.put(i, clone(slotHistory.get(i)));
 		}
 
-		List<OfferInfo> newStandardizedOffers = clone(standardizedOffers);
+		OfferColumns newStandardizedOffers = standardizedOffers.clone();
 		Instant newGeLimitRefresh = nextGeLimitRefresh == null ? null : Instant.ofEpochMilli(nextGeLimitRefresh.toEpochMilli());
 
-		return new HistoryManager(newSlotHistory, newStandardizedOffers, newGeLimitRefresh, itemsBoughtThisLimitWindow);
+		ArchivedHistory newArchivedHistory = archivedHistory == null ? null : archivedHistory.clone();
+
+		return new HistoryManager(newSlotHistory, newStandardizedOffers, newGeLimitRefresh, itemsBoughtThisLimitWindow,
+			newArchivedHistory);
 	}
 
 	//a utility to clone an offer list
@@ -118,9 +158,83 @@ public class HistoryManager
 	 */
 	public void updateHistory(OfferInfo newOffer)
 	{
-		storeStandardizedOffer(newOffer);
-		updateGeProperties(standardizedOffers.get(standardizedOffers.size() - 1));
-		truncateOffers(standardizedOffers);
+		Map<Integer, Integer> tradeStarts = tradeStarts();
+		OfferInfo standardizedOffer = storeStandardizedOffer(newOffer);
+		updateGeProperties(standardizedOffer);
+		int slot = standardizedOffer.getSlot();
+
+		if (!standardizedOffer.isComplete())
+		{
+			tradeStarts.putIfAbsent(slot, standardizedOffers.size() - 1);
+			return;
+		}
+
+		Integer tradeStart = tradeStarts.remove(slot);
+		if (tradeStart != null && standardizedOffers.isBuy(tradeStart) == standardizedOffer.isBuy())
+		{
+			//same as in truncateOffers, the completed offer now stands for the whole trade.
+			standardizedOffers.setQuantitySinceLastOffer(standardizedOffers.size() - 1, standardizedOffer.getCurrentQuantityInTrade());
+			removeTradeOffers(slot, standardizedOffer.isBuy(), tradeStart);
+		}
+	}
+
+	private Map<Integer, Integer> tradeStarts()
+	{
+		if (tradeStarts != null)
+		{
+			return tradeStarts;
+		}
+
+		tradeStarts = new HashMap<>();
+		Map<Integer, Boolean> slotsLeft = new HashMap<>();
+		slotHistory.forEach((slot, offers) -> slotsLeft.put(slot, offers.get(0).isBuy()));
+
+		//the offers of a trade in progress are the ones after the last completed offer of that slot
+		for (int i = standardizedOffers.size() - 1; i >= 0 && !slotsLeft.isEmpty(); i--)
+		{
+			int slot = standardizedOffers.getSlot(i);
+			Boolean isBuy = slotsLeft.get(slot);
+			if (isBuy == null || isBuy != standardizedOffers.isBuy(i))
+			{
+				continue;
+			}
+
+			if (standardizedOffers.isComplete(i))
+			{
+				slotsLeft.remove(slot);
+			}
+			else
+			{
+				tradeStarts.put(slot, i);
+			}
+		}
+
+		return tradeStarts;
+	}
+
+	/**
+	 * Removes the offers of a trade that just completed, other than its completed offer. The offers of a trade are all
+	 * made since it started, so only the offers from its first one onwards are looked at and moved, however long the
+	 * history is.
+	 */
+	private void removeTradeOffers(int slot, boolean isBuy, int start)
+	{
+		IntPredicate isTradeOffer = i -> standardizedOffers.getSlot(i) == slot && standardizedOffers.isBuy(i) == isBuy &&
+			!standardizedOffers.isComplete(i);
+
+		//the trades in progress in other slots that started after this one move down by the offers removed before them
+		tradeStarts.replaceAll((otherSlot, otherStart) -> otherStart <= start ? otherStart :
+			otherStart - (int) IntStream.range(start, otherStart).filter(isTradeOffer).count());
+		standardizedOffers.removeIf(start, isTradeOffer);
+
+		if (offerSums != null)
+		{
+			offerSums.truncate(start);
+			for (int i = start; i < standardizedOffers.size(); i++)
+			{
+				offerSums.add(standardizedOffers, i);
+			}
+		}
 	}
 
 	/**
@@ -132,8 +246,9 @@ public class HistoryManager
 	 * @param newOffer the OfferInfo object created from the {@link GrandExchangeOfferChanged} event that
 	 *                 onGrandExchangeOfferChanged (in FlippingPlugin) receives. It is crucial to note that
 	 *                 This OfferInfo object contains the current currentQuantityInTrade bought/sold for the trade currently.
+	 * @return the standardized offer that was added
 	 */
-	public void storeStandardizedOffer(OfferInfo newOffer)
+	public OfferInfo storeStandardizedOffer(OfferInfo newOffer)
 	{
 		int newOfferSlot = newOffer.getSlot();
 
@@ -144,7 +259,7 @@ public class HistoryManager
 			List<OfferInfo> currentTradesForSlot = slotHistory.get(newOfferSlot);
 			OfferInfo lastOffer = currentTradesForSlot.get(currentTradesForSlot.size() - 1);
 			OfferInfo standardizedOffer = newOffer.standardizeOffer(lastOffer);
-			standardizedOffers.add(standardizedOffer);
+			addOffer(standardizedOffer);
 			currentTradesForSlot.add(newOffer);
 
 			//if the offer is complete, clear the history for that slot.
@@ -152,6 +267,7 @@ public class HistoryManager
 			{
 				slotHistory.remove(newOfferSlot);
 			}
+			return standardizedOffer;
 		}
 		//its the first trade for that slot!
 		else
@@ -159,7 +275,7 @@ public class HistoryManager
 			//don't need to standardize as its currentQuantityInTrade represents the currentQuantityInTrade bought as its the first
 			//trade in that slot.
 			newOffer.setQuantitySinceLastOffer(newOffer.getCurrentQuantityInTrade());
-			standardizedOffers.add(newOffer);
+			addOffer(newOffer);
 
 			//if the offer was a complete offer there's no need to add it to the slot history as a complete
 			//offer means the slot history is over.
@@ -168,8 +284,77 @@ public class HistoryManager
 				slotHistory.put(newOfferSlot, new ArrayList<>(Arrays.asList(newOffer)));
 
 			}
+			return newOffer;
+		}
+	}
+
+	private void addOffer(OfferInfo offer)
+	{
+		if (!standardizedOffers.isEmpty() && standardizedOffers.compareTime(standardizedOffers.size() - 1, offer.getTime()) > 0)
+		{
+			offerSums = null;
+			flipMatcher = null;
+		}
+		standardizedOffers.add(offer);
+		if (offerSums != null)
+		{
+			offerSums.add(standardizedOffers, standardizedOffers.size() - 1);
+		}
+		if (flipMatcher != null)
+		{
+			flipMatcher.add(offer);
 		}
+	}
+
+	/**
+	 * Adds offers from another history, such as when the histories of the same item from different accounts are
+	 * merged.
+	 */
+	public void addOffers(List<OfferInfo> offers)
+	{
+		standardizedOffers.addAll(offers);
+		offerSums = null;
+		flipMatcher = null;
+		tradeStarts = null;
+	}
+
+	/**
+	 * Adds the offers of another history of the same item. Both histories' offers are in time order, so they are
+	 * merged in a single pass rather than added and sorted again.
+	 */
+	public void addOffers(HistoryManager other)
+	{
+		sortOffers();
+		other.sortOffers();
+		standardizedOffers = OfferColumns.merge(standardizedOffers, other.standardizedOffers);
+		offerSums = null;
+		flipMatcher = null;
+		tradeStarts = null;
+	}
+
+	/**
+	 * @return copies of the standardized offers, so changing them doesn't change the history.
+	 */
+	public List<OfferInfo> getStandardizedOffers()
+	{
+		return standardizedOffers.asList();
+	}
+
+	public void setStandardizedOffers(List<OfferInfo> standardizedOffers)
+	{
+		this.standardizedOffers = OfferColumns.of(standardizedOffers);
+		offerSums = null;
+		flipMatcher = null;
+		tradeStarts = null;
+	}
 
+	/**
+	 * Sets the account that made every offer in the history.
+	 */
+	public void setMadeBy(String madeBy)
+	{
+		standardizedOffers.setMadeBy(madeBy);
+		flipMatcher = null;
 	}
 
 	/**
@@ -199,7 +384,8 @@ public class HistoryManager
 
 	}
 
-	public void truncateOffers(List<OfferInfo> offers)
+	//truncates a plain list of offers the way updateHistory truncates the history's own offers, only used by the tests
+	void truncateOffers(List<OfferInfo> offers)
 	{
 		OfferInfo mostRecentOffer = offers.get(offers.size() - 1);
 
@@ -299,6 +485,96 @@ public class HistoryManager
 		return Math.min(numBoughtItems, numSoldItems);
 	}
 
+	/**
+	 * Whether the archived offers fall within an interval. Every archived offer is older than the offers still in the
+	 * history, so the archive is only included when it is entirely within the interval.
+	 *
+	 * @param earliestTime the start of the interval
+	 * @return true if the archive's aggregates should be added to the interval's stats
+	 */
+	public boolean includesArchive(Instant earliestTime)
+	{
+		return archivedHistory != null && archivedHistory.getEarliestTime() != null &&
+			archivedHistory.getEarliestTime().isAfter(earliestTime);
+	}
+
+	/**
+	 * Gets the quantity of items flipped between earliestTime and now, including the archived offers if they are in
+	 * the interval.
+	 *
+	 * @param earliestTime the start of the interval
+	 * @return the quantity of items flipped in the interval
+	 */
+	public int countItemsFlipped(Instant earliestTime)
+	{
+		OfferSums sums = offerSums();
+		int start = firstOfferAfter(earliestTime);
+		int boughtQuantity = sums.quantity(true, start);
+		int soldQuantity = sums.quantity(false, start);
+
+		if (includesArchive(earliestTime))
+		{
+			boughtQuantity += archivedHistory.getBoughtQuantity();
+			soldQuantity += archivedHistory.getSoldQuantity();
+		}
+
+		return Math.min(boughtQuantity, soldQuantity);
+	}
+
+	/**
+	 * Gets the expenses or revenues of the item between earliestTime and now, including the archived offers if they
+	 * are in the interval. As with {@link #getCashflow(List, boolean)}, only the items that were flipped are counted.
+	 * The archive only keeps the total value of its offers, so when the flipped quantity ends within the archived
+	 * offers their average price is used for it.
+	 *
+	 * @param earliestTime the start of the interval
+	 * @param getExpense   true to get the expenses and false to get the revenues
+	 * @return the cashflow of the interval
+	 */
+	public long getCashflow(Instant earliestTime, boolean getExpense)
+	{
+		int itemLimit = countItemsFlipped(earliestTime);
+		int start = firstOfferAfter(earliestTime);
+		if (!includesArchive(earliestTime))
+		{
+			return offerSums.value(getExpense, start, itemLimit, standardizedOffers);
+		}
+
+		int archivedQuantity = getExpense ? archivedHistory.getBoughtQuantity() : archivedHistory.getSoldQuantity();
+		long archivedValue = getExpense ? archivedHistory.getBoughtValue() : archivedHistory.getSoldValue();
+
+		if (itemLimit <= archivedQuantity)
+		{
+			return archivedQuantity == 0 ? 0 : archivedValue * itemLimit / archivedQuantity;
+		}
+
+		return archivedValue + offerSums.value(getExpense, start, itemLimit - archivedQuantity, standardizedOffers);
+	}
+
+	/**
+	 * Gets the profit of the item between earliestTime and now, including the archived offers if they are in
+	 * the interval.
+	 *
+	 * @param earliestTime the start of the interval
+	 * @return profit
+	 */
+	public long getProfit(Instant earliestTime)
+	{
+		return getCashflow(earliestTime, false) - getCashflow(earliestTime, true);
+	}
+
+	/**
+	 * Gets the amount of flips that were made out of the archived offers, if they are in the interval. The flips
+	 * themselves aren't kept, so the stats panel adds this to the amount of flips it shows.
+	 *
+	 * @param earliestTime the start of the interval
+	 * @return the amount of archived flips in the interval
+	 */
+	public int countArchivedFlips(Instant earliestTime)
+	{
+		return includesArchive(earliestTime) ? archivedHistory.getFlips() : 0;
+	}
+
 	/**
 	 * Gets the list of trades of either buy or sell states from a list of trades.
 	 *
@@ -371,9 +647,9 @@ public class HistoryManager
 	{
 		ArrayList<OfferInfo> result = new ArrayList<>();
 
-		for (OfferInfo offer : standardizedOffers)
+		for (OfferInfo offer : intervalView(earliestTime))
 		{
-			if (offer.getTime().isAfter(earliestTime) && offer.isValidStatOffer())
+			if (offer.isValidStatOffer())
 			{
 				result.add(offer);
 			}
@@ -382,6 +658,141 @@ public class HistoryManager
 		return result;
 	}
 
+	/**
+	 * @param earliestTime the start of the interval
+	 * @return the time of the last offer in the interval that counts towards the stats, or null if there is none
+	 */
+	public Instant getLastTradeTime(Instant earliestTime)
+	{
+		List<OfferInfo> intervalView = intervalView(earliestTime);
+		for (int i = intervalView.size() - 1; i >= 0; i--)
+		{
+			if (intervalView.get(i).isValidStatOffer())
+			{
+				return intervalView.get(i).getTime();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the offers traded between earliestTime and now without copying them. The offers are found with a
+	 * binary search and returned as a view of the history whose offers are created as they are read, so the view
+	 * should be used right away, before the history changes again. It includes offers that aren't valid stat offers,
+	 * which everything calculating stats from it skips.
+	 *
+	 * @param earliestTime the earliest time that trades from the trade history are in the view.
+	 * @return a view of the offers that were within the interval of earliestTime and now.
+	 */
+	List<OfferInfo> intervalView(Instant earliestTime)
+	{
+		offerSums();
+		return standardizedOffers.asList().subList(firstOfferAfter(earliestTime), standardizedOffers.size());
+	}
+
+	private OfferSums offerSums()
+	{
+		if (offerSums == null)
+		{
+			sortOffers();
+			offerSums = new OfferSums(standardizedOffers);
+		}
+		return offerSums;
+	}
+
+	private void sortOffers()
+	{
+		if (standardizedOffers.sortByTime())
+		{
+			offerSums = null;
+			flipMatcher = null;
+			tradeStarts = null;
+		}
+	}
+
+	/**
+	 * @return the index of the first offer made after the given time, or the amount of offers if there are none
+	 */
+	private int firstOfferAfter(Instant time)
+	{
+		int low = 0;
+		int high = standardizedOffers.size();
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (standardizedOffers.compareTime(mid, time) > 0)
+			{
+				high = mid;
+			}
+			else
+			{
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Gets the offers that can be moved to the archive, which are the ones made before the cutoff whose trade
+	 * is over. Offers of a trade that is still in progress in a slot are kept so the trade can be standardized
+	 * and truncated when it completes.
+	 *
+	 * @param cutoff the time before which offers are archived
+	 * @return the offers that would be archived
+	 */
+	public List<OfferInfo> offersToArchive(Instant cutoff)
+	{
+		List<OfferInfo> offers = new ArrayList<>();
+		for (int i = 0; i < standardizedOffers.size(); i++)
+		{
+			if (canArchive(i, cutoff))
+			{
+				offers.add(standardizedOffers.get(i));
+			}
+		}
+		return offers;
+	}
+
+	private boolean canArchive(int index, Instant cutoff)
+	{
+		return standardizedOffers.compareTime(index, cutoff) < 0 &&
+			(standardizedOffers.isComplete(index) || !slotHistory.containsKey(standardizedOffers.getSlot(index)));
+	}
+
+	/**
+	 * Removes the offers made before the cutoff from the history and adds them to the archive's aggregates. The
+	 * offers themselves should already have been written to the archive on disk.
+	 *
+	 * @param cutoff the time before which offers are archived
+	 * @return the offers that were archived
+	 */
+	public List<OfferInfo> archiveOffersBefore(Instant cutoff)
+	{
+		List<OfferInfo> archived = offersToArchive(cutoff);
+		if (archived.isEmpty())
+		{
+			return archived;
+		}
+
+		//counted the same way the stats panel counts the flips it shows
+		List<OfferInfo> statOffers = archived.stream().filter(OfferInfo::isValidStatOffer).collect(Collectors.toList());
+		int flips = (int) createFlips(statOffers).stream()
+			.filter(flip -> !flip.isMarginCheck() && flip.getQuantity() > 0)
+			.count();
+
+		if (archivedHistory == null)
+		{
+			archivedHistory = new ArchivedHistory();
+		}
+		archivedHistory.add(archived, flips);
+
+		standardizedOffers.removeIf(0, i -> canArchive(i, cutoff));
+		offerSums = null;
+		flipMatcher = null;
+		tradeStarts = null;
+		return archived;
+	}
+
 	/**
 	 * This is to prevent old values from remaining for items that a user has bought and whose
 	 * refresh times have already passed. If the user buys the item again, the values will be up to date,
@@ -409,87 +820,167 @@ public class HistoryManager
 		switch (panelSelection)
 		{
 			case FLIPPING:
-				result = standardizedOffers.stream().anyMatch(OfferInfo::isValidFlippingOffer);
+				result = anyOffer(standardizedOffers::isValidFlippingOffer) ||
+					(archivedHistory != null && archivedHistory.isValidFlippingOffer());
 				break;
 
 			case STATS:
-				result = standardizedOffers.stream().anyMatch(OfferInfo::isValidStatOffer);
+				result = anyOffer(standardizedOffers::isValidStatOffer) ||
+					(archivedHistory != null && archivedHistory.hasValidStatOffers());
 				break;
 
 			case BOTH:
-				result = standardizedOffers.stream().anyMatch(offer -> offer.isValidFlippingOffer() && offer.isValidStatOffer());
+				result = anyOffer(i -> standardizedOffers.isValidFlippingOffer(i) && standardizedOffers.isValidStatOffer(i));
 				break;
 		}
 
 		return result;
 	}
 
+	private boolean anyOffer(IntPredicate condition)
+	{
+		for (int i = 0; i < standardizedOffers.size(); i++)
+		{
+			if (condition.test(i))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public void invalidateOffers(PanelSelection panelSelection)
 	{
-		invalidateOffers(panelSelection, standardizedOffers);
+		invalidateArchive(panelSelection);
+		invalidateOffers(panelSelection, 0);
 	}
 
-	public void invalidateOffers(PanelSelection panelSelection, List<OfferInfo> offerList)
+	/**
+	 * Invalidates the offers made after earliestTime, along with the archive if it falls within that interval.
+	 */
+	public void invalidateOffers(PanelSelection panelSelection, Instant earliestTime)
 	{
-		switch (panelSelection)
+		if (includesArchive(earliestTime))
 		{
-			case FLIPPING:
-				offerList.forEach(offer -> offer.setValidFlippingOffer(false));
-				break;
+			invalidateArchive(panelSelection);
+		}
 
-			case STATS:
-				offerList.forEach(offer -> offer.setValidStatOffer(false));
-				break;
+		offerSums();
+		invalidateOffers(panelSelection, firstOfferAfter(earliestTime));
+	}
 
-			case BOTH:
-				offerList.forEach(offer ->
-				{
-					offer.setValidFlippingOffer(false);
-					offer.setValidStatOffer(false);
-				});
-				break;
+	/**
+	 * Invalidates the offers from the start index onwards.
+	 */
+	private void invalidateOffers(PanelSelection panelSelection, int start)
+	{
+		for (int i = start; i < standardizedOffers.size(); i++)
+		{
+			if (panelSelection != PanelSelection.STATS)
+			{
+				standardizedOffers.setValidFlippingOffer(i, false);
+			}
+			if (panelSelection != PanelSelection.FLIPPING)
+			{
+				standardizedOffers.setValidStatOffer(i, false);
+			}
 		}
 
+		if (panelSelection != PanelSelection.FLIPPING)
+		{
+			offerSums = null;
+			flipMatcher = null;
+		}
 		truncateInvalidOffers();
 	}
 
+	private void invalidateArchive(PanelSelection panelSelection)
+	{
+		if (archivedHistory == null)
+		{
+			return;
+		}
+
+		if (panelSelection != PanelSelection.FLIPPING)
+		{
+			archivedHistory.invalidateStatOffers();
+		}
+		if (panelSelection != PanelSelection.STATS)
+		{
+			archivedHistory.setValidFlippingOffer(false);
+		}
+	}
+
 	public void truncateInvalidOffers()
 	{
+		IntPredicate isInvalid = i -> !standardizedOffers.isValidFlippingOffer(i) && !standardizedOffers.isValidStatOffer(i);
+		int removed;
+
 		if (nextGeLimitRefresh == null)
 		{
-			standardizedOffers.removeIf(offer -> !offer.isValidFlippingOffer() && !offer.isValidStatOffer());
-			return;
+			removed = standardizedOffers.removeIf(0, isInvalid);
 		}
+		else
+		{
+			Instant startOfRefresh = nextGeLimitRefresh.minus(4, ChronoUnit.HOURS);
 
-		Instant startOfRefresh = nextGeLimitRefresh.minus(4, ChronoUnit.HOURS);
+			removed = standardizedOffers.removeIf(0, i -> isInvalid.test(i) &&
+				(standardizedOffers.compareTime(i, nextGeLimitRefresh) > 0 || standardizedOffers.compareTime(i, startOfRefresh) < 0));
+		}
 
-		standardizedOffers.removeIf(offer -> !offer.isValidFlippingOffer() && !offer.isValidStatOffer() &&
-			(offer.getTime().isAfter(nextGeLimitRefresh) || offer.getTime().isBefore(startOfRefresh)));
+		if (removed > 0)
+		{
+			offerSums = null;
+			tradeStarts = null;
+		}
 	}
 
 	/**
-	 * Creates Flips from offers. Flips represent a buy trade followed by a sell trade. A trade is a collection
-	 * of offers from the empty offer to the completed offer. A completed offer marks the end of a trade.
+	 * Gets the Flips made after earliestTime. Flips represent a buy trade followed by a sell trade. A trade is a
+	 * collection of offers from the empty offer to the completed offer. A completed offer marks the end of a trade.
+	 * The flips of all the offers are made as the offers come in (see {@link FlipMatcher}), so this only has to find
+	 * the ones that were made in the interval. A flip's time is the time of its sell, so its buys can be from before
+	 * earliestTime.
 	 *
-	 * @param earliestTime the time after which trades should be looked at
-	 * @return flips
+	 * @param earliestTime the time after which flips should be looked at
+	 * @return flips, most recent first
 	 */
 	public List<Flip> getFlips(Instant earliestTime)
 	{
-		ArrayList<OfferInfo> intervalHistory = getIntervalsHistory(earliestTime);
-
-		//group offers based on which account those offers belong to (this is really only relevant when getting the flips
-		//of the account wide tradelist as you don't want to match offers from diff accounts.
-		Map<String, List<OfferInfo>> groupedOffers = intervalHistory.stream().collect(Collectors.groupingBy(OfferInfo::getMadeBy));
-
-		//take each offer list and create flips out of them, then put those flips into one list.
-		List<Flip> flips = new ArrayList<>();
-		groupedOffers.values().forEach(offers -> flips.addAll(createFlips(offers)));
+		return flipMatcher().getFlips(earliestTime);
+	}
 
-		flips.sort(Comparator.comparing(Flip::getTime));
-		Collections.reverse(flips);
+	/**
+	 * Counts the flips made between earliestTime and now that aren't margin checks, including the archived flips if
+	 * they are in the interval. The matcher keeps a running count of its flips, so this doesn't depend on how many
+	 * flips there are.
+	 *
+	 * @param earliestTime the start of the interval
+	 * @return the amount of flips in the interval
+	 */
+	public int countFlips(Instant earliestTime)
+	{
+		return flipMatcher().countFlips(earliestTime) + countArchivedFlips(earliestTime);
+	}
 
-		return flips;
+	private FlipMatcher flipMatcher()
+	{
+		if (flipMatcher == null)
+		{
+			//offers from different accounts are never matched, which the matcher takes care of by keeping the offers
+			//of each account apart.
+			offerSums();
+			flipMatcher = new FlipMatcher();
+			for (int i = 0; i < standardizedOffers.size(); i++)
+			{
+				//only the completed offers are matched, so the rest don't need to be created
+				if (standardizedOffers.isComplete(i))
+				{
+					flipMatcher.add(standardizedOffers.get(i));
+				}
+			}
+		}
+		return flipMatcher;
 	}
 
 	/**
@@ -682,4 +1173,125 @@ public class HistoryManager
 		}
 		return subLists;
 	}
+
+	/**
+	 * Running totals of the quantities and values of the valid stat offers that were bought and sold, where index i
+	 * holds the totals of the first i offers. The totals of the offers from an index onwards are the difference
+	 * between the last totals and the totals at that index.
+	 */
+	private static class OfferSums
+	{
+		private int size;
+		private int[] boughtQuantity;
+		private long[] boughtValue;
+		private int[] soldQuantity;
+		private long[] soldValue;
+
+		OfferSums(OfferColumns offers)
+		{
+			int capacity = offers.size() + 16;
+			boughtQuantity = new int[capacity];
+			boughtValue = new long[capacity];
+			soldQuantity = new int[capacity];
+			soldValue = new long[capacity];
+			for (int i = 0; i < offers.size(); i++)
+			{
+				add(offers, i);
+			}
+		}
+
+		/**
+		 * Drops the totals of the offers from the given index onwards, so the offers from there can be added again.
+		 */
+		void truncate(int size)
+		{
+			this.size = size;
+		}
+
+		void add(OfferColumns offers, int index)
+		{
+			if (size + 1 == boughtQuantity.length)
+			{
+				int capacity = boughtQuantity.length * 2;
+				boughtQuantity = Arrays.copyOf(boughtQuantity, capacity);
+				boughtValue = Arrays.copyOf(boughtValue, capacity);
+				soldQuantity = Arrays.copyOf(soldQuantity, capacity);
+				soldValue = Arrays.copyOf(soldValue, capacity);
+			}
+
+			boughtQuantity[size + 1] = boughtQuantity[size];
+			boughtValue[size + 1] = boughtValue[size];
+			soldQuantity[size + 1] = soldQuantity[size];
+			soldValue[size + 1] = soldValue[size];
+
+			if (offers.isValidStatOffer(index))
+			{
+				int quantity = offers.getQuantitySinceLastOffer(index);
+				long value = (long) quantity * offers.getPrice(index);
+				if (offers.isBuy(index))
+				{
+					boughtQuantity[size + 1] += quantity;
+					boughtValue[size + 1] += value;
+				}
+				else
+				{
+					soldQuantity[size + 1] += quantity;
+					soldValue[size + 1] += value;
+				}
+			}
+
+			size++;
+		}
+
+		/**
+		 * @return the quantity bought or sold in the offers from the start index onwards
+		 */
+		int quantity(boolean buy, int start)
+		{
+			int[] quantity = buy ? boughtQuantity : soldQuantity;
+			return quantity[size] - quantity[start];
+		}
+
+		/**
+		 * Gets the value of the first itemLimit items bought or sold in the offers from the start index onwards, the
+		 * same as {@link #getValueOfTrades(List, int)} does for a list of offers.
+		 *
+		 * @param offers the offers the totals were made from, to get the price of the offer the limit ends in
+		 */
+		long value(boolean buy, int start, int itemLimit, OfferColumns offers)
+		{
+			int[] quantity = buy ? boughtQuantity : soldQuantity;
+			long[] value = buy ? boughtValue : soldValue;
+
+			if (itemLimit <= 0)
+			{
+				return 0;
+			}
+
+			long target = (long) quantity[start] + itemLimit;
+			if (quantity[size] <= target)
+			{
+				return value[size] - value[start];
+			}
+
+			//the first index whose total reaches the target is just after the offer the limit ends in
+			int low = start + 1;
+			int high = size;
+			while (low < high)
+			{
+				int mid = (low + high) >>> 1;
+				if (quantity[mid] >= target)
+				{
+					high = mid;
+				}
+				else
+				{
+					low = mid + 1;
+				}
+			}
+
+			int lastOffer = low - 1;
+			return value[lastOffer] - value[start] + (target - quantity[lastOffer]) * offers.getPrice(lastOffer);
+		}
+	}
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Periodically folds the journal of the account logged in on this client into that account's snapshot (see
+ * {@link TradePersister#compactJournal}). A journal is compacted once it gets too large or once it has been around
+ * for too long, which keeps both the journal and the time it takes to replay it on load bounded. Compaction works
+ * off of what is on disk, so it runs on its own thread and never has to wait on the client thread.
+ * <p>
+ * Only the logged in account is compacted as that is the only account this client journals offers for.
+ */
+@Slf4j
+public class JournalCompactor
+{
+	private static final long MAX_JOURNAL_BYTES = 256 * 1024;
+
+	private static final Duration MAX_JOURNAL_AGE = Duration.ofMinutes(30);
+
+	private static final long CHECK_INTERVAL_SECONDS = 60;
+
+	ScheduledExecutorService executor;
+
+	Future compactionTask;
+
+	Supplier<String> loggedInAccount;
+
+	//the account and time at which its current journal was first seen by the compactor, used to figure out how
+	//old the journal is.
+	String journalOwner;
+	Instant journalFirstSeen;
+
+	public JournalCompactor(Supplier<String> loggedInAccount)
+	{
+		this.executor = Executors.newSingleThreadScheduledExecutor();
+		this.loggedInAccount = loggedInAccount;
+	}
+
+	public void start()
+	{
+		compactionTask = executor.scheduleWithFixedDelay(this::compactIfNeeded, CHECK_INTERVAL_SECONDS,
+			CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	public void stop()
+	{
+		compactionTask.cancel(false);
+		executor.shutdown();
+	}
+
+	private void compactIfNeeded()
+	{
+		try
+		{
+			String displayName = loggedInAccount.get();
+			if (displayName == null)
+			{
+				return;
+			}
+
+			File journalFile = new File(TradePersister.getParentDirectory(), displayName + TradePersister.JOURNAL_EXTENSION);
+			if (!journalFile.exists())
+			{
+				journalOwner = null;
+				return;
+			}
+
+			if (!displayName.equals(journalOwner))
+			{
+				journalOwner = displayName;
+				journalFirstSeen = Instant.now();
+			}
+
+			boolean tooLarge = journalFile.length() > MAX_JOURNAL_BYTES;
+			boolean tooOld = Duration.between(journalFirstSeen, Instant.now()).compareTo(MAX_JOURNAL_AGE) > 0;
+			if (tooLarge || tooOld)
+			{
+				TradePersister.compactJournal(displayName);
+				journalOwner = null;
+			}
+		}
+		catch (IOException e)
+		{
+			log.info("couldn't compact journal, will try again later. error = {}", e);
+		}
+		catch (Exception e)
+		{
+			log.info("unknown exception while compacting journal, error = {}", e);
+		}
+	}
+}
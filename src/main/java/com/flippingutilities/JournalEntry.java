@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A single line in an account's trade journal. Each entry records an offer that was accepted by the plugin along
+ * with the name and ge limit of its item, so that the offer can be replayed onto the last snapshot of the account
+ * even if the item didn't exist in the trade list yet.
+ */
+@Data
+@AllArgsConstructor
+public class JournalEntry
+{
+	//the sequence number of this entry. Entries with a sequence number less than or equal to the sequence number
+	//stored in the snapshot have already been folded into it and are skipped when replaying.
+	@SerializedName("s")
+	private long sequence;
+
+	@SerializedName("o")
+	private OfferInfo offer;
+
+	@SerializedName("n")
+	private String itemName;
+
+	@SerializedName("l")
+	private int geLimit;
+
+	public static JournalEntry ofOffer(long sequence, OfferInfo offer, String itemName, int geLimit)
+	{
+		return new JournalEntry(sequence, offer, itemName, geLimit);
+	}
+}
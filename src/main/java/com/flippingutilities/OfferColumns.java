@@ -0,0 +1,593 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+import net.runelite.api.GrandExchangeOfferState;
+
+/**
+ * Stores a history's standardized offers a column at a time, in parallel arrays of primitives, rather than as an
+ * {@link OfferInfo} object each with its own {@link Instant} and account name. This takes a fraction of the memory
+ * and lets the stats be worked out by looping over arrays without creating any objects. The accounts that made the
+ * offers are kept once each, with each offer holding the index of its account.
+ * <p>
+ * Offers are read by their index. {@link #get(int)} and {@link #asList()} create OfferInfo copies of the offers for
+ * the code that needs them, so changing those copies doesn't change the stored offers. The offers are written to json
+ * as a list of offers, the same way a list of OfferInfo is.
+ * <p>
+ * A clone shares its arrays with the columns it was cloned from until either of them is changed, at which point the
+ * one being changed copies them. Cloning an item to show it in the account wide list, or to store it on another
+ * thread, therefore doesn't copy its offers unless they change while the clone is still around.
+ */
+@JsonAdapter(OfferColumns.Adapter.class)
+class OfferColumns
+{
+	private static final GrandExchangeOfferState[] STATES = GrandExchangeOfferState.values();
+
+	private static final byte BUY = 1;
+	private static final byte VALID_STAT_OFFER = 2;
+	private static final byte VALID_FLIPPING_OFFER = 4;
+
+	//stands in for a missing time, state or account
+	private static final long NO_TIME = Long.MIN_VALUE;
+	private static final byte NO_STATE = -1;
+	private static final short NO_ACCOUNT = -1;
+
+	private int size;
+	private byte[] flags;
+	private int[] itemIds;
+	private int[] currentQuantitiesInTrade;
+	private int[] prices;
+	private long[] epochSeconds;
+	private int[] nanos;
+	private byte[] slots;
+	private byte[] states;
+	private int[] ticksArrivedAt;
+	private int[] ticksSinceFirstOffer;
+	private int[] totalQuantitiesInTrade;
+	private int[] quantitiesSinceLastOffer;
+	private short[] accounts;
+
+	private List<String> accountNames = new ArrayList<>();
+
+	//whether the arrays may be shared with a clone, in which case they are copied before they are changed. Only the
+	//one that changes first copies them, so the other one keeps this set and makes a needless copy if it's changed
+	//too, which is rare as clones are hardly ever changed.
+	private boolean shared;
+
+	OfferColumns()
+	{
+		this(16);
+	}
+
+	private OfferColumns(int capacity)
+	{
+		flags = new byte[capacity];
+		itemIds = new int[capacity];
+		currentQuantitiesInTrade = new int[capacity];
+		prices = new int[capacity];
+		epochSeconds = new long[capacity];
+		nanos = new int[capacity];
+		slots = new byte[capacity];
+		states = new byte[capacity];
+		ticksArrivedAt = new int[capacity];
+		ticksSinceFirstOffer = new int[capacity];
+		totalQuantitiesInTrade = new int[capacity];
+		quantitiesSinceLastOffer = new int[capacity];
+		accounts = new short[capacity];
+	}
+
+	private OfferColumns(OfferColumns other)
+	{
+		size = other.size;
+		flags = other.flags;
+		itemIds = other.itemIds;
+		currentQuantitiesInTrade = other.currentQuantitiesInTrade;
+		prices = other.prices;
+		epochSeconds = other.epochSeconds;
+		nanos = other.nanos;
+		slots = other.slots;
+		states = other.states;
+		ticksArrivedAt = other.ticksArrivedAt;
+		ticksSinceFirstOffer = other.ticksSinceFirstOffer;
+		totalQuantitiesInTrade = other.totalQuantitiesInTrade;
+		quantitiesSinceLastOffer = other.quantitiesSinceLastOffer;
+		accounts = other.accounts;
+		accountNames = other.accountNames;
+		shared = true;
+	}
+
+	static OfferColumns of(List<OfferInfo> offers)
+	{
+		OfferColumns columns = new OfferColumns(Math.max(16, offers.size()));
+		columns.addAll(offers);
+		return columns;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	void add(OfferInfo offer)
+	{
+		beforeWrite();
+		ensureCapacity(size + 1);
+		set(size++, offer);
+	}
+
+	void addAll(List<OfferInfo> offers)
+	{
+		if (offers instanceof View && ((View) offers).columns() != this)
+		{
+			addAll(((View) offers).columns());
+			return;
+		}
+
+		beforeWrite();
+		ensureCapacity(size + offers.size());
+		offers.forEach(this::add);
+	}
+
+	void addAll(OfferColumns other)
+	{
+		beforeWrite();
+		ensureCapacity(size + other.size);
+		for (int i = 0; i < other.size; i++)
+		{
+			copy(other, i, size++, other.accounts[i] == NO_ACCOUNT ? NO_ACCOUNT : accountIndex(other.accountNames.get(other.accounts[i])));
+		}
+	}
+
+	/**
+	 * @return an OfferInfo copy of the offer at the given index
+	 */
+	OfferInfo get(int index)
+	{
+		return new OfferInfo(
+			isBuy(index),
+			itemIds[index],
+			currentQuantitiesInTrade[index],
+			prices[index],
+			getTime(index),
+			slots[index],
+			getState(index),
+			ticksArrivedAt[index],
+			ticksSinceFirstOffer[index],
+			totalQuantitiesInTrade[index],
+			quantitiesSinceLastOffer[index],
+			isValidStatOffer(index),
+			isValidFlippingOffer(index),
+			getMadeBy(index));
+	}
+
+	/**
+	 * @return a read only list of the offers, whose elements are created as they are read.
+	 */
+	List<OfferInfo> asList()
+	{
+		return new View();
+	}
+
+	boolean isBuy(int index)
+	{
+		return (flags[index] & BUY) != 0;
+	}
+
+	boolean isValidStatOffer(int index)
+	{
+		return (flags[index] & VALID_STAT_OFFER) != 0;
+	}
+
+	boolean isValidFlippingOffer(int index)
+	{
+		return (flags[index] & VALID_FLIPPING_OFFER) != 0;
+	}
+
+	void setValidStatOffer(int index, boolean valid)
+	{
+		setFlag(index, VALID_STAT_OFFER, valid);
+	}
+
+	void setValidFlippingOffer(int index, boolean valid)
+	{
+		setFlag(index, VALID_FLIPPING_OFFER, valid);
+	}
+
+	int getCurrentQuantityInTrade(int index)
+	{
+		return currentQuantitiesInTrade[index];
+	}
+
+	int getPrice(int index)
+	{
+		return prices[index];
+	}
+
+	int getSlot(int index)
+	{
+		return slots[index];
+	}
+
+	int getQuantitySinceLastOffer(int index)
+	{
+		return quantitiesSinceLastOffer[index];
+	}
+
+	void setQuantitySinceLastOffer(int index, int quantity)
+	{
+		beforeWrite();
+		quantitiesSinceLastOffer[index] = quantity;
+	}
+
+	Instant getTime(int index)
+	{
+		return epochSeconds[index] == NO_TIME ? null : Instant.ofEpochSecond(epochSeconds[index], nanos[index]);
+	}
+
+	GrandExchangeOfferState getState(int index)
+	{
+		return states[index] == NO_STATE ? null : STATES[states[index]];
+	}
+
+	boolean isComplete(int index)
+	{
+		return OfferInfo.isComplete(getState(index));
+	}
+
+	String getMadeBy(int index)
+	{
+		return accounts[index] == NO_ACCOUNT ? null : accountNames.get(accounts[index]);
+	}
+
+	/**
+	 * Sets the account that made every offer.
+	 */
+	void setMadeBy(String madeBy)
+	{
+		beforeWrite();
+		accountNames.clear();
+		Arrays.fill(accounts, 0, size, accountIndex(madeBy));
+	}
+
+	/**
+	 * Compares the time of an offer with the given time without creating an Instant for the offer.
+	 */
+	int compareTime(int index, Instant time)
+	{
+		int result = Long.compare(epochSeconds[index], time.getEpochSecond());
+		return result != 0 ? result : Integer.compare(nanos[index], time.getNano());
+	}
+
+	/**
+	 * Removes the offers from the start index onwards that match the filter, moving the rest of the offers down in a
+	 * single pass.
+	 *
+	 * @return the amount of offers removed
+	 */
+	int removeIf(int start, IntPredicate filter)
+	{
+		int kept = start;
+		for (int i = start; i < size; i++)
+		{
+			if (!filter.test(i))
+			{
+				if (kept != i)
+				{
+					beforeWrite();
+					copy(this, i, kept, accounts[i]);
+				}
+				kept++;
+			}
+		}
+
+		int removed = size - kept;
+		size = kept;
+		return removed;
+	}
+
+	/**
+	 * Puts the offers in the order of their time. The sort is stable so offers made at the same time stay in the
+	 * order they came in, and nothing is moved when the offers are already in order, which they almost always are.
+	 *
+	 * @return whether any offers were moved
+	 */
+	boolean sortByTime()
+	{
+		boolean sorted = true;
+		for (int i = 1; i < size && sorted; i++)
+		{
+			sorted = compareTimes(i - 1, i) <= 0;
+		}
+		if (sorted)
+		{
+			return false;
+		}
+
+		beforeWrite();
+
+		Integer[] order = new Integer[size];
+		Arrays.setAll(order, i -> i);
+		Arrays.sort(order, this::compareTimes);
+
+		OfferColumns sortedColumns = new OfferColumns(flags.length);
+		for (int i = 0; i < size; i++)
+		{
+			sortedColumns.copy(this, order[i], i, accounts[order[i]]);
+		}
+
+		flags = sortedColumns.flags;
+		itemIds = sortedColumns.itemIds;
+		currentQuantitiesInTrade = sortedColumns.currentQuantitiesInTrade;
+		prices = sortedColumns.prices;
+		epochSeconds = sortedColumns.epochSeconds;
+		nanos = sortedColumns.nanos;
+		slots = sortedColumns.slots;
+		states = sortedColumns.states;
+		ticksArrivedAt = sortedColumns.ticksArrivedAt;
+		ticksSinceFirstOffer = sortedColumns.ticksSinceFirstOffer;
+		totalQuantitiesInTrade = sortedColumns.totalQuantitiesInTrade;
+		quantitiesSinceLastOffer = sortedColumns.quantitiesSinceLastOffer;
+		accounts = sortedColumns.accounts;
+		return true;
+	}
+
+	/**
+	 * Merges two lists of offers that are each in the order of their time into a new one. Offers made at the same
+	 * time are put in the order of the list they're from, first before second.
+	 */
+	static OfferColumns merge(OfferColumns first, OfferColumns second)
+	{
+		OfferColumns merged = new OfferColumns(Math.max(16, first.size + second.size));
+		int i = 0;
+		int j = 0;
+		while (i < first.size || j < second.size)
+		{
+			boolean fromFirst = j == second.size || (i < first.size && compareTimes(first, i, second, j) <= 0);
+			OfferColumns from = fromFirst ? first : second;
+			int index = fromFirst ? i++ : j++;
+			merged.copy(from, index, merged.size++, from.accounts[index] == NO_ACCOUNT ? NO_ACCOUNT :
+				merged.accountIndex(from.accountNames.get(from.accounts[index])));
+		}
+		return merged;
+	}
+
+	/**
+	 * @return columns that share this one's arrays until one of them is changed
+	 */
+	public OfferColumns clone()
+	{
+		shared = true;
+		return new OfferColumns(this);
+	}
+
+	/**
+	 * Copies the arrays before they're changed if they may be shared with a clone.
+	 */
+	private void beforeWrite()
+	{
+		if (!shared)
+		{
+			return;
+		}
+
+		shared = false;
+		resize(flags.length);
+		accountNames = new ArrayList<>(accountNames);
+	}
+
+	private int compareTimes(int first, int second)
+	{
+		return compareTimes(this, first, this, second);
+	}
+
+	private static int compareTimes(OfferColumns first, int firstIndex, OfferColumns second, int secondIndex)
+	{
+		int result = Long.compare(first.epochSeconds[firstIndex], second.epochSeconds[secondIndex]);
+		return result != 0 ? result : Integer.compare(first.nanos[firstIndex], second.nanos[secondIndex]);
+	}
+
+	private void setFlag(int index, byte flag, boolean value)
+	{
+		beforeWrite();
+		flags[index] = (byte) (value ? flags[index] | flag : flags[index] & ~flag);
+	}
+
+	private void set(int index, OfferInfo offer)
+	{
+		flags[index] = (byte) ((offer.isBuy() ? BUY : 0) |
+			(offer.isValidStatOffer() ? VALID_STAT_OFFER : 0) |
+			(offer.isValidFlippingOffer() ? VALID_FLIPPING_OFFER : 0));
+		itemIds[index] = offer.getItemId();
+		currentQuantitiesInTrade[index] = offer.getCurrentQuantityInTrade();
+		prices[index] = offer.getPrice();
+		epochSeconds[index] = offer.getTime() == null ? NO_TIME : offer.getTime().getEpochSecond();
+		nanos[index] = offer.getTime() == null ? 0 : offer.getTime().getNano();
+		slots[index] = (byte) offer.getSlot();
+		states[index] = offer.getState() == null ? NO_STATE : (byte) offer.getState().ordinal();
+		ticksArrivedAt[index] = offer.getTickArrivedAt();
+		ticksSinceFirstOffer[index] = offer.getTicksSinceFirstOffer();
+		totalQuantitiesInTrade[index] = offer.getTotalQuantityInTrade();
+		quantitiesSinceLastOffer[index] = offer.getQuantitySinceLastOffer();
+		accounts[index] = offer.getMadeBy() == null ? NO_ACCOUNT : accountIndex(offer.getMadeBy());
+	}
+
+	private void copy(OfferColumns from, int fromIndex, int index, short account)
+	{
+		flags[index] = from.flags[fromIndex];
+		itemIds[index] = from.itemIds[fromIndex];
+		currentQuantitiesInTrade[index] = from.currentQuantitiesInTrade[fromIndex];
+		prices[index] = from.prices[fromIndex];
+		epochSeconds[index] = from.epochSeconds[fromIndex];
+		nanos[index] = from.nanos[fromIndex];
+		slots[index] = from.slots[fromIndex];
+		states[index] = from.states[fromIndex];
+		ticksArrivedAt[index] = from.ticksArrivedAt[fromIndex];
+		ticksSinceFirstOffer[index] = from.ticksSinceFirstOffer[fromIndex];
+		totalQuantitiesInTrade[index] = from.totalQuantitiesInTrade[fromIndex];
+		quantitiesSinceLastOffer[index] = from.quantitiesSinceLastOffer[fromIndex];
+		accounts[index] = account;
+	}
+
+	private short accountIndex(String madeBy)
+	{
+		if (madeBy == null)
+		{
+			return NO_ACCOUNT;
+		}
+
+		int index = accountNames.indexOf(madeBy);
+		if (index == -1)
+		{
+			index = accountNames.size();
+			accountNames.add(madeBy);
+		}
+		return (short) index;
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity <= flags.length)
+		{
+			return;
+		}
+
+		resize(Math.max(capacity, flags.length * 2));
+	}
+
+	private void resize(int newCapacity)
+	{
+		flags = Arrays.copyOf(flags, newCapacity);
+		itemIds = Arrays.copyOf(itemIds, newCapacity);
+		currentQuantitiesInTrade = Arrays.copyOf(currentQuantitiesInTrade, newCapacity);
+		prices = Arrays.copyOf(prices, newCapacity);
+		epochSeconds = Arrays.copyOf(epochSeconds, newCapacity);
+		nanos = Arrays.copyOf(nanos, newCapacity);
+		slots = Arrays.copyOf(slots, newCapacity);
+		states = Arrays.copyOf(states, newCapacity);
+		ticksArrivedAt = Arrays.copyOf(ticksArrivedAt, newCapacity);
+		ticksSinceFirstOffer = Arrays.copyOf(ticksSinceFirstOffer, newCapacity);
+		totalQuantitiesInTrade = Arrays.copyOf(totalQuantitiesInTrade, newCapacity);
+		quantitiesSinceLastOffer = Arrays.copyOf(quantitiesSinceLastOffer, newCapacity);
+		accounts = Arrays.copyOf(accounts, newCapacity);
+	}
+
+	private class View extends AbstractList<OfferInfo> implements RandomAccess
+	{
+		@Override
+		public OfferInfo get(int index)
+		{
+			if (index < 0 || index >= size)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return OfferColumns.this.get(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		OfferColumns columns()
+		{
+			return OfferColumns.this;
+		}
+	}
+
+	/**
+	 * Reads and writes the offers as a json list of offers.
+	 */
+	static class Adapter implements TypeAdapterFactory
+	{
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type)
+		{
+			TypeAdapter<OfferInfo> offerAdapter = gson.getAdapter(OfferInfo.class);
+			return (TypeAdapter<T>) new TypeAdapter<OfferColumns>()
+			{
+				@Override
+				public void write(JsonWriter out, OfferColumns columns) throws IOException
+				{
+					if (columns == null)
+					{
+						out.nullValue();
+						return;
+					}
+
+					out.beginArray();
+					for (int i = 0; i < columns.size(); i++)
+					{
+						offerAdapter.write(out, columns.get(i));
+					}
+					out.endArray();
+				}
+
+				@Override
+				public OfferColumns read(JsonReader in) throws IOException
+				{
+					if (in.peek() == JsonToken.NULL)
+					{
+						in.nextNull();
+						return null;
+					}
+
+					OfferColumns columns = new OfferColumns();
+					in.beginArray();
+					while (in.hasNext())
+					{
+						columns.add(offerAdapter.read(in));
+					}
+					in.endArray();
+					return columns;
+				}
+			};
+		}
+	}
+}
@@ -94,6 +94,11 @@ public class OfferInfo
 	 * @return boolean value representing that the offer is a complete offer
 	 */
 	public boolean isComplete()
+	{
+		return isComplete(state);
+	}
+
+	public static boolean isComplete(GrandExchangeOfferState state)
 	{
 		return
 			state == GrandExchangeOfferState.BOUGHT ||
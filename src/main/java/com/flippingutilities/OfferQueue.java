@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands offers from the client thread over to the writer (see {@link AccountWriter}). The client thread only puts the
+ * offer in the queue, and the writer applies every offer that is queued by the time it gets to them at once, so a
+ * burst of offers, such as the ones that come in on login, is applied and shown in the panels in one go.
+ */
+@Slf4j
+public class OfferQueue
+{
+	/**
+	 * An offer along with the name and ge limit of its item, which have to be looked up on the client thread.
+	 */
+	@Data
+	@AllArgsConstructor
+	public static class QueuedOffer
+	{
+		private final OfferInfo offer;
+
+		private final String itemName;
+
+		private final int geLimit;
+	}
+
+	private final BlockingQueue<QueuedOffer> queue;
+
+	//used to run the applying of the queued offers on the writer's thread.
+	private final Consumer<Runnable> writer;
+
+	private final Consumer<List<QueuedOffer>> applyOffers;
+
+	//whether the writer has been asked to apply the queued offers and hasn't started to yet.
+	private final AtomicBoolean applyScheduled = new AtomicBoolean();
+
+	public OfferQueue(int capacity, Consumer<Runnable> writer, Consumer<List<QueuedOffer>> applyOffers)
+	{
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.writer = writer;
+		this.applyOffers = applyOffers;
+	}
+
+	/**
+	 * Queues an offer to be applied on the writer's thread. This only waits for the writer if the queue is full, as
+	 * offers can't be dropped.
+	 */
+	public void add(QueuedOffer queuedOffer)
+	{
+		if (!queue.offer(queuedOffer))
+		{
+			log.info("offer queue is full, waiting for the queued offers to be applied");
+			try
+			{
+				queue.put(queuedOffer);
+			}
+			catch (InterruptedException e)
+			{
+				log.info("interrupted while queueing an offer, it won't be recorded");
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+
+		if (applyScheduled.compareAndSet(false, true))
+		{
+			writer.accept(this::applyQueuedOffers);
+		}
+	}
+
+	private void applyQueuedOffers()
+	{
+		//cleared before the queue is drained so that an offer queued after draining schedules another run
+		applyScheduled.set(false);
+		List<QueuedOffer> offers = new ArrayList<>();
+		queue.drainTo(offers);
+		if (!offers.isEmpty())
+		{
+			applyOffers.accept(offers);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Describes an account that is stored in shards rather than in a single snapshot. The account's items are split
+ * into a fixed number of shards by their item id and each shard is stored in its own file, so storing the account
+ * only rewrites the shards of the items that changed. The manifest records which file holds each shard, the order
+ * of the trade list and everything in the account's data other than its items. It is written after the shards, so
+ * it always points at a complete set of shard files.
+ */
+@Data
+@AllArgsConstructor
+public class ShardManifest
+{
+	public static final int SHARD_COUNT = 64;
+
+	//incremented every time the account is stored, shard files are named after the generation they were written in
+	//so a shard file is never overwritten while a manifest still points at it.
+	@SerializedName("g")
+	private long generation;
+
+	//shard number to the name of the file, in the account's shard directory, that holds the items of that shard.
+	@SerializedName("s")
+	private Map<Integer, String> shardFiles;
+
+	//the item ids of the trade list, in order.
+	@SerializedName("o")
+	private List<Integer> itemOrder;
+
+	//the account's data without its items.
+	@SerializedName("a")
+	private AccountData account;
+
+	public static int shardOf(int itemId)
+	{
+		return Math.floorMod(itemId, SHARD_COUNT);
+	}
+
+	public static ShardManifest of(long generation, Map<Integer, String> shardFiles, AccountData data)
+	{
+		AccountData account = new AccountData();
+		account.setLastOffers(data.getLastOffers());
+		account.setSessionStartTime(data.getSessionStartTime());
+		account.setAccumulatedSessionTime(data.getAccumulatedSessionTime());
+		account.setLastSessionTimeUpdate(data.getLastSessionTimeUpdate());
+		account.setJournalSequence(data.getJournalSequence());
+		List<Integer> itemOrder = data.getTrades().stream().map(FlippingItem::getItemId).collect(Collectors.toList());
+		return new ShardManifest(generation, shardFiles, itemOrder, account);
+	}
+
+	/**
+	 * Puts the items read from the shards back in the order of the trade list they were stored from.
+	 */
+	public List<FlippingItem> order(List<FlippingItem> items)
+	{
+		Map<Integer, Integer> positions = new HashMap<>();
+		for (int i = 0; i < itemOrder.size(); i++)
+		{
+			positions.putIfAbsent(itemOrder.get(i), i);
+		}
+
+		List<FlippingItem> ordered = new ArrayList<>(items);
+		ordered.sort(Comparator.comparingInt(item -> positions.getOrDefault(item.getItemId(), Integer.MAX_VALUE)));
+		return ordered;
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes changes to accounts' trade histories to disk on its own thread, so that no disk I/O happens on the client
+ * thread when offers come in. Changes are collected and written once every flush interval, which turns a burst of
+ * offers into a single write.
+ * <p>
+ * When offers are journaled, the journal entries of each account are queued and appended to its journal together.
+ * Otherwise the account is marked as dirty and a full snapshot of it is stored. That snapshot is taken from a copy of
+ * the account's data which is made on the writer's thread, as that is the thread the data is changed on (see
+ * {@link AccountWriter}).
+ */
+@Slf4j
+public class TradeFlusher
+{
+	ScheduledExecutorService executor;
+
+	Future flushTask;
+
+	IntSupplier flushIntervalSeconds;
+
+	//used to run the copying of an account's data on the writer's thread.
+	Consumer<Runnable> writer;
+
+	Function<String, AccountData> accountData;
+
+	Supplier<FlippingConfig.StorageFormat> storageFormat;
+
+	//journal entries that haven't been appended to their account's journal yet, guarded by this.
+	Map<String, List<JournalEntry>> pendingEntries = new HashMap<>();
+
+	//accounts which have changed since a snapshot was last stored for them, guarded by this.
+	Set<String> dirtyAccounts = new HashSet<>();
+
+	//makes sure the journal entries of an account are appended in the order they were queued in, even when a flush is
+	//requested from outside the flusher's thread.
+	private final Object flushLock = new Object();
+
+	public TradeFlusher(IntSupplier flushIntervalSeconds, Consumer<Runnable> writer,
+						Function<String, AccountData> accountData, Supplier<FlippingConfig.StorageFormat> storageFormat)
+	{
+		this.executor = Executors.newSingleThreadScheduledExecutor();
+		this.flushIntervalSeconds = flushIntervalSeconds;
+		this.writer = writer;
+		this.accountData = accountData;
+		this.storageFormat = storageFormat;
+	}
+
+	public void start()
+	{
+		scheduleFlush();
+	}
+
+	/**
+	 * Stops flushing in the background and appends any queued journal entries on the calling thread. Accounts that
+	 * are only dirty are left to be stored by the caller, as the writer might not be around to copy them.
+	 */
+	public void stop()
+	{
+		flushTask.cancel(false);
+		executor.shutdown();
+		Set<String> displayNames;
+		synchronized (this)
+		{
+			displayNames = new HashSet<>(pendingEntries.keySet());
+		}
+		displayNames.forEach(this::flushJournal);
+	}
+
+	public synchronized void enqueue(String displayName, JournalEntry entry)
+	{
+		pendingEntries.computeIfAbsent(displayName, k -> new ArrayList<>()).add(entry);
+	}
+
+	public synchronized void markDirty(String displayName)
+	{
+		dirtyAccounts.add(displayName);
+	}
+
+	/**
+	 * Appends the queued journal entries of an account to its journal on the calling thread. This has to be done
+	 * before anything else is appended to the journal, as entries are expected to be in order of their sequence number.
+	 *
+	 * @param displayName the display name of the account whose queued entries should be written
+	 */
+	public void flushJournal(String displayName)
+	{
+		synchronized (flushLock)
+		{
+			List<JournalEntry> entries;
+			synchronized (this)
+			{
+				entries = pendingEntries.remove(displayName);
+			}
+
+			if (entries == null || entries.isEmpty())
+			{
+				return;
+			}
+
+			try
+			{
+				TradePersister.appendToJournal(displayName, entries);
+			}
+			catch (IOException e)
+			{
+				log.info("couldn't append {} offers to the journal for {}, will try again later. error = {}",
+					entries.size(), displayName, e);
+				synchronized (this)
+				{
+					entries.addAll(pendingEntries.getOrDefault(displayName, new ArrayList<>()));
+					pendingEntries.put(displayName, entries);
+				}
+			}
+		}
+	}
+
+	private void scheduleFlush()
+	{
+		flushTask = executor.schedule(this::flush, Math.max(1, flushIntervalSeconds.getAsInt()), TimeUnit.SECONDS);
+	}
+
+	private void flush()
+	{
+		try
+		{
+			Set<String> journaled;
+			Set<String> dirty;
+			synchronized (this)
+			{
+				journaled = new HashSet<>(pendingEntries.keySet());
+				dirty = new HashSet<>(dirtyAccounts);
+				dirtyAccounts.clear();
+			}
+
+			journaled.forEach(this::flushJournal);
+			dirty.forEach(this::storeCopy);
+		}
+		catch (Exception e)
+		{
+			log.info("unknown exception while flushing trades, error = {}", e);
+		}
+		finally
+		{
+			if (!executor.isShutdown())
+			{
+				scheduleFlush();
+			}
+		}
+	}
+
+	/**
+	 * Copies the data of the account on the writer's thread and stores a snapshot of the copy on the flusher's thread.
+	 * The changes made to the account are handed over to the copy, and handed back if it can't be stored, so that
+	 * an account stored in shards only has the shards rewritten that changed since its last store.
+	 */
+	private void storeCopy(String displayName)
+	{
+		writer.accept(() ->
+		{
+			AccountData data = accountData.apply(displayName);
+			if (data == null)
+			{
+				return;
+			}
+
+			if (executor.isShutdown())
+			{
+				return;
+			}
+
+			AccountData copy = data.clone();
+			data.clearChanges();
+			executor.execute(() ->
+			{
+				try
+				{
+					TradePersister.storeTrades(displayName, copy, storageFormat.get());
+				}
+				catch (IOException e)
+				{
+					log.info("couldn't store trades for {}, will try again later. error = {}", displayName, e);
+					writer.accept(() ->
+					{
+						AccountData current = accountData.apply(displayName);
+						if (current != null)
+						{
+							current.addChanges(copy);
+						}
+					});
+					markDirty(displayName);
+				}
+			});
+		});
+	}
+}
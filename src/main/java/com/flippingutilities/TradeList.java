@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import java.util.AbstractSequentialList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An account's trade list, most recently traded item first. The items are kept in a linked list with an index of
+ * them by item id, so finding the item an offer is for and moving it to the front of the list take the same time
+ * however many items the account has ever traded. It's a regular list otherwise, and is written to and read from
+ * json as one.
+ */
+class TradeList extends AbstractSequentialList<FlippingItem>
+{
+	//the list is circular, so the head's next node is the first item and its previous node the last.
+	private final Node head = new Node(null);
+
+	//the node of each item id. An account only has one item per id, but if the list somehow holds more than one,
+	//this is the first of them unless they were moved around by something other than moveToFront.
+	private final Map<Integer, Node> index = new HashMap<>();
+
+	private int size;
+
+	TradeList()
+	{
+		head.next = head;
+		head.previous = head;
+	}
+
+	TradeList(Collection<FlippingItem> items)
+	{
+		this();
+		addAll(items);
+	}
+
+	/**
+	 * @return the item with the item id, or null if there isn't one in the list
+	 */
+	FlippingItem findItem(int itemId)
+	{
+		Node node = index.get(itemId);
+		return node == null ? null : node.item;
+	}
+
+	/**
+	 * Moves the item with the item id to the front of the list, if it's in the list.
+	 */
+	void moveToFront(int itemId)
+	{
+		Node node = index.get(itemId);
+		if (node != null && head.next != node)
+		{
+			unlink(node);
+			linkBefore(node, head.next);
+			modCount++;
+		}
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public void clear()
+	{
+		head.next = head;
+		head.previous = head;
+		index.clear();
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public ListIterator<FlippingItem> listIterator(int start)
+	{
+		if (start < 0 || start > size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + start + ", Size: " + size);
+		}
+		return new Itr(start);
+	}
+
+	private void linkBefore(Node node, Node next)
+	{
+		node.next = next;
+		node.previous = next.previous;
+		next.previous.next = node;
+		next.previous = node;
+	}
+
+	private void unlink(Node node)
+	{
+		node.previous.next = node.next;
+		node.next.previous = node.previous;
+	}
+
+	private void add(Node node, Node next)
+	{
+		linkBefore(node, next);
+		addToIndex(node);
+		size++;
+		modCount++;
+	}
+
+	private void remove(Node node)
+	{
+		unlink(node);
+		size--;
+		modCount++;
+		removeFromIndex(node);
+	}
+
+	private void set(Node node, FlippingItem item)
+	{
+		if (node.item.getItemId() == item.getItemId())
+		{
+			node.item = item;
+			return;
+		}
+		removeFromIndex(node);
+		node.item = item;
+		addToIndex(node);
+	}
+
+	private void addToIndex(Node node)
+	{
+		//an item added to the front is the first with its id, otherwise it's only indexed if it's the only one
+		if (head.next == node)
+		{
+			index.put(node.item.getItemId(), node);
+		}
+		else
+		{
+			index.putIfAbsent(node.item.getItemId(), node);
+		}
+	}
+
+	private void removeFromIndex(Node node)
+	{
+		int itemId = node.item.getItemId();
+		if (index.get(itemId) != node)
+		{
+			return;
+		}
+
+		index.remove(itemId);
+		//another item with the same id takes its place, which only takes a search when the node was indexed
+		for (Node other = head.next; other != head; other = other.next)
+		{
+			if (other != node && other.item.getItemId() == itemId)
+			{
+				index.put(itemId, other);
+				break;
+			}
+		}
+	}
+
+	private static class Node
+	{
+		private FlippingItem item;
+		private Node previous;
+		private Node next;
+
+		Node(FlippingItem item)
+		{
+			this.item = item;
+		}
+	}
+
+	private class Itr implements ListIterator<FlippingItem>
+	{
+		private Node next;
+		private int nextIndex;
+		private Node lastReturned;
+		private int expectedModCount = modCount;
+
+		Itr(int start)
+		{
+			next = head.next;
+			for (nextIndex = 0; nextIndex < start; nextIndex++)
+			{
+				next = next.next;
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return nextIndex < size;
+		}
+
+		@Override
+		public FlippingItem next()
+		{
+			checkForModification();
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			lastReturned = next;
+			next = next.next;
+			nextIndex++;
+			return lastReturned.item;
+		}
+
+		@Override
+		public boolean hasPrevious()
+		{
+			return nextIndex > 0;
+		}
+
+		@Override
+		public FlippingItem previous()
+		{
+			checkForModification();
+			if (!hasPrevious())
+			{
+				throw new NoSuchElementException();
+			}
+			next = next.previous;
+			lastReturned = next;
+			nextIndex--;
+			return lastReturned.item;
+		}
+
+		@Override
+		public int nextIndex()
+		{
+			return nextIndex;
+		}
+
+		@Override
+		public int previousIndex()
+		{
+			return nextIndex - 1;
+		}
+
+		@Override
+		public void remove()
+		{
+			checkForModification();
+			if (lastReturned == null)
+			{
+				throw new IllegalStateException();
+			}
+			if (next == lastReturned)
+			{
+				next = lastReturned.next;
+			}
+			else
+			{
+				nextIndex--;
+			}
+			TradeList.this.remove(lastReturned);
+			lastReturned = null;
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public void set(FlippingItem item)
+		{
+			checkForModification();
+			if (lastReturned == null)
+			{
+				throw new IllegalStateException();
+			}
+			TradeList.this.set(lastReturned, item);
+		}
+
+		@Override
+		public void add(FlippingItem item)
+		{
+			checkForModification();
+			TradeList.this.add(new Node(item), next);
+			nextIndex++;
+			lastReturned = null;
+			expectedModCount = modCount;
+		}
+
+		private void checkForModification()
+		{
+			if (modCount != expectedModCount)
+			{
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A copy of an account's trade list for the panels to read, so they never read items while the writer is changing
+ * them (see {@link AccountWriter}). The copies of the items are kept between builds and only the items that changed
+ * since the last build are copied again.
+ */
+class TradeListCopy
+{
+	//the copy of each item in the account's trade list.
+	private Map<FlippingItem, FlippingItem> copies = new IdentityHashMap<>();
+
+	//the items that changed since the list was last built, or null if every item has to be copied again.
+	private Set<FlippingItem> changedItems;
+
+	//the trade list the copy was last built from, as the account's trade list is replaced when it is reloaded.
+	private List<FlippingItem> trades;
+
+	private List<FlippingItem> list = Collections.emptyList();
+
+	/**
+	 * Copies every item again the next time the list is built.
+	 */
+	void invalidate()
+	{
+		changedItems = null;
+	}
+
+	void itemChanged(FlippingItem item)
+	{
+		if (changedItems != null && item != null)
+		{
+			changedItems.add(item);
+		}
+	}
+
+	void itemsChanged(Collection<FlippingItem> items)
+	{
+		items.forEach(this::itemChanged);
+	}
+
+	/**
+	 * @param account the account the copy is of
+	 * @return the copies of the account's items, in the order of its trade list
+	 */
+	List<FlippingItem> build(AccountData account)
+	{
+		if (account.getTrades() != trades)
+		{
+			changedItems = null;
+		}
+		else if (changedItems != null && changedItems.isEmpty() && list.size() == trades.size())
+		{
+			return list;
+		}
+
+		Map<FlippingItem, FlippingItem> newCopies = new IdentityHashMap<>();
+		List<FlippingItem> newList = new ArrayList<>(account.getTrades().size());
+		for (FlippingItem item : account.getTrades())
+		{
+			FlippingItem copy = copies.get(item);
+			if (copy == null || changedItems == null || changedItems.contains(item))
+			{
+				copy = item.clone();
+			}
+			newCopies.put(item, copy);
+			newList.add(copy);
+		}
+
+		copies = newCopies;
+		trades = account.getTrades();
+		changedItems = Collections.newSetFromMap(new IdentityHashMap<>());
+		list = Collections.unmodifiableList(newList);
+		return list;
+	}
+}
@@ -27,15 +27,60 @@
 package com.flippingutilities;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.RuneLite;
 
@@ -48,23 +93,87 @@ import net.runelite.client.RuneLite;
 public class TradePersister
 {
 
-	//this is in {user's home directory}/.runelite/flipping
-	public static final File PARENT_DIRECTORY = new File(RuneLite.RUNELITE_DIR, "flipping");
+	//this is in {user's home directory}/.runelite/flipping, tests point it at a temporary directory instead.
+	private static volatile File parentDirectory = new File(RuneLite.RUNELITE_DIR, "flipping");
 
-	public static final File OLD_FILE = new File(PARENT_DIRECTORY, "trades.json");
+	private static final String OLD_FILE_NAME = "trades.json";
+
+	public static final String SNAPSHOT_EXTENSION = ".json";
+
+	public static final String BINARY_SNAPSHOT_EXTENSION = ".dat";
+
+	public static final String JOURNAL_EXTENSION = ".journal";
+
+	//when a journal is being compacted it is renamed to {displayName}.sealed.journal so that new entries go to a
+	//fresh journal while the sealed one is folded into the snapshot.
+	public static final String SEALED_JOURNAL_EXTENSION = ".sealed" + JOURNAL_EXTENSION;
+
+	public static final String TEMP_EXTENSION = ".tmp";
+
+	//the snapshot that was replaced by the latest write is kept in {snapshot file}.bak, to fall back to if the
+	//latest snapshot turns out to be unreadable.
+	public static final String BACKUP_EXTENSION = ".bak";
+
+	//when no generation of an account's snapshot can be read, the files are renamed to {snapshot file}.corrupt so
+	//that they aren't overwritten by the next save.
+	public static final String CORRUPT_EXTENSION = ".corrupt";
+
+	//binary and compressed snapshots start with a line holding the crc32 checksum of the rest of the file, as
+	//"//crc32 {8 hex digits}".
+	private static final String CHECKSUM_PREFIX = "//crc32 ";
+	private static final int CHECKSUM_HEADER_LENGTH = CHECKSUM_PREFIX.length() + 9;
+
+	//json snapshots that aren't compressed end with a "crc32" field instead, so they stay plain json that other tools
+	//can read. The checksum is of the json object as it was before the field was added to it, which is everything
+	//before the field followed by the object's closing brace.
+	private static final String CHECKSUM_FIELD_PREFIX = ",\"crc32\":\"";
+	private static final int CHECKSUM_FIELD_LENGTH = CHECKSUM_FIELD_PREFIX.length() + 10;
+
+	//whether snapshots are gzip compressed when they are written. Compressed snapshots are detected when they are
+	//read, so this can be changed at any time and existing snapshots are compressed (or not) the next time they are
+	//written.
+	private static volatile boolean compressSnapshots;
+
+	//a small summary of the account's snapshot (see AccountSummary) is stored in {displayName}.summary so accounts can
+	//be listed without loading their trade history.
+	public static final String SUMMARY_EXTENSION = ".summary";
+
+	//guards against a compaction and a regular store writing the same account's snapshot at the same time. Locks are
+	//per account so that different accounts can be loaded and stored concurrently.
+	private static final Map<String, Object> SNAPSHOT_LOCKS = new ConcurrentHashMap<>();
+
+	//upper bound on the number of threads used to load accounts on startup.
+	private static final int MAX_LOAD_THREADS = 4;
+
+	//offers that are moved out of an account's history are stored in archive/{displayName}/{yyyy-MM}.json, with one
+	//file per month (in UTC) holding a map of item id to the offers of that item made in that month.
+	private static final String ARCHIVE_DIRECTORY_NAME = "archive";
+
+	//accounts can also be stored in shards (see ShardManifest), in which case {displayName}.manifest points at the
+	//shard files in the {displayName}.shards directory.
+	public static final String MANIFEST_EXTENSION = ".manifest";
+
+	public static final String SHARD_DIRECTORY_EXTENSION = ".shards";
+
+	//whether accounts are stored in shards. Like compressSnapshots, this can be changed at any time and an account is
+	//moved to the new layout the next time it is stored.
+	private static volatile boolean shardedStorage;
+
+	private static final DateTimeFormatter ARCHIVE_SEGMENT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneOffset.UTC);
 
 	/**
 	 * Creates flipping directory if it doesn't exist and partitions trades.json into individual files
-	 * for each account, if it exists.
+	 * for each account, if it exists. Any account snapshots that aren't in the given format are converted to it.
 	 *
+	 * @param format the format account snapshots should be stored in
 	 * @throws IOException handled in FlippingPlugin
 	 */
-	public static void setup() throws IOException
+	public static void setup(FlippingConfig.StorageFormat format) throws IOException
 	{
-		if (!PARENT_DIRECTORY.exists())
+		if (!parentDirectory.exists())
 		{
 			log.info("flipping directory doesn't exist yet so it's being created");
-			if (!PARENT_DIRECTORY.mkdir())
+			if (!parentDirectory.mkdir())
 			{
 				throw new IOException("unable to create parent directory!");
 			}
@@ -72,34 +181,84 @@ public class TradePersister
 		else
 		{
 			log.info("flipping directory already exists so it's not being created");
-			if (OLD_FILE.exists())
+			File oldFile = new File(parentDirectory, OLD_FILE_NAME);
+			if (oldFile.exists())
 			{
 				log.info("trades.json exists and is being partitioned into separate files to match the new way of storing" +
 					"trades");
-				partitionOldFile(OLD_FILE);
-				OLD_FILE.delete();
+				partitionOldFile(oldFile, format);
+				oldFile.delete();
 
 			}
+			convertSnapshots(format);
 		}
 
 	}
 
+	/**
+	 * Converts every account snapshot that isn't stored in the given format into that format. The converted data
+	 * is decoded again and compared to the original before the old snapshot is removed, so a conversion can never
+	 * lose anything.
+	 *
+	 * @param format the format snapshots should be stored in
+	 */
+	private static void convertSnapshots(FlippingConfig.StorageFormat format)
+	{
+		String otherExtension = format == FlippingConfig.StorageFormat.BINARY ? SNAPSHOT_EXTENSION : BINARY_SNAPSHOT_EXTENSION;
+		final Gson gson = new Gson();
+		for (File f : parentDirectory.listFiles())
+		{
+			if (!f.getName().endsWith(otherExtension))
+			{
+				continue;
+			}
+
+			String displayName = f.getName().split("\\.")[0];
+			try
+			{
+				AccountData accountData = loadFromFile(f);
+				if (accountData == null)
+				{
+					continue;
+				}
+
+				byte[] converted = encode(accountData, format);
+				AccountData reloaded = decode(converted, format);
+				if (!gson.toJson(accountData).equals(gson.toJson(reloaded)))
+				{
+					log.info("converting the data for {} to {} would lose information, leaving it as is", displayName, format);
+					continue;
+				}
+
+				log.info("converting the data for {} to {}", displayName, format);
+				synchronized (snapshotLock(displayName))
+				{
+					writeSnapshotFile(snapshotFile(displayName, format), accountData, format);
+					deleteFile(f.getName());
+					deleteFile(f.getName() + BACKUP_EXTENSION);
+				}
+			}
+			catch (IOException e)
+			{
+				log.info("couldn't convert the data for {} to {}, error = {}", displayName, format, e);
+			}
+		}
+	}
+
 	/**
 	 * Reads the data from trades.json and creates separate files for each account to conform with the
 	 * new way of saving data. It also sets the "madeBy" field on every OfferInfo object in the trade lists
 	 * as the old trades (in trades.json) would not have that field.
 	 *
-	 * @param f the old trades.json file.
+	 * @param f      the old trades.json file.
+	 * @param format the format the new files should be stored in
 	 */
-	private static void partitionOldFile(File f) throws IOException
+	private static void partitionOldFile(File f, FlippingConfig.StorageFormat format) throws IOException
 	{
-		String tradesJson = new String(Files.readAllBytes(OLD_FILE.toPath()));
-
-		final Gson gson = new Gson();
 		Type type = new TypeToken<Map<String, AccountData>>()
 		{
 		}.getType();
-		Map<String, AccountData> accountData = gson.fromJson(tradesJson, type);
+		Map<String, AccountData> accountData = readJsonFile(f, type);
 
 		//they have no data to partition
 		if (!accountData.containsKey(FlippingPlugin.ACCOUNT_WIDE))
@@ -136,12 +295,11 @@ public class TradePersister
 			//sets the madeBy field on each offer as its required in the process for constructing the account wide tradelist.
 			//Every new offer that comes in (After this update) already gets it set, but the old offers won't have it and
 			//I don't want to have to delete all the user's data, so i am just making it conform to the new format.
-			accountSpecificData.getTrades().forEach(item -> item.getHistory().getStandardizedOffers().forEach(offer ->
-				offer.setMadeBy(item.getFlippedBy())));
+			accountSpecificData.getTrades().forEach(item -> item.getHistory().setMadeBy(item.getFlippedBy()));
 
 			try
 			{
-				storeTrades(displayName, accountSpecificData);
+				storeTrades(displayName, accountSpecificData, format);
 			}
 			catch (IOException e)
 			{
@@ -151,80 +309,1297 @@ public class TradePersister
 		}
 	}
 
+	public static File getParentDirectory()
+	{
+		return parentDirectory;
+	}
+
+	static void setParentDirectory(File parentDirectory)
+	{
+		TradePersister.parentDirectory = parentDirectory;
+	}
+
+	public static void setCompressSnapshots(boolean compressSnapshots)
+	{
+		TradePersister.compressSnapshots = compressSnapshots;
+	}
+
+	public static void setShardedStorage(boolean shardedStorage)
+	{
+		TradePersister.shardedStorage = shardedStorage;
+	}
+
 	/**
 	 * loads each account's data from the parent directory located at {user's home directory}/.runelite/flipping/
-	 * Each account's data is stored in separate file in that directory and is named {displayName}.json
+	 * Each account's data is stored in separate file in that directory and is named {displayName}.json, with the
+	 * offers that came in since that file was written stored in {displayName}.journal
 	 *
 	 * @return a map of display name to that account's data
 	 * @throws IOException handled in FlippingPlugin
 	 */
 	public static Map<String, AccountData> loadAllTrades() throws IOException
 	{
-		Map<String, AccountData> accountsData = new HashMap<>();
-		for (File f : PARENT_DIRECTORY.listFiles())
+		return loadAllTrades((displayName, accountData) -> {});
+	}
+
+	/**
+	 * Same as {@link #loadAllTrades()}, but the accounts are parsed concurrently on a bounded pool and each one is
+	 * handed to the callback as soon as it is loaded, so the caller can start using the accounts before the slowest
+	 * one is done. Loading all accounts takes about as long as loading the largest one rather than the sum of them.
+	 *
+	 * @param onAccountLoaded invoked on a loader thread with the display name and data of each loaded account
+	 * @return a map of display name to that account's data, once every account has been loaded
+	 * @throws IOException handled in FlippingPlugin
+	 */
+	public static Map<String, AccountData> loadAllTrades(BiConsumer<String, AccountData> onAccountLoaded) throws IOException
+	{
+		Set<String> displayNames = accountNames();
+		Map<String, AccountData> accountsData = new ConcurrentHashMap<>();
+		if (displayNames.isEmpty())
 		{
-			String displayName = f.getName().split("\\.")[0];
-			log.info("loading data for {}", displayName);
-			AccountData accountData = loadFromFile(f);
-			if (accountData == null)
+			return accountsData;
+		}
+
+		ExecutorService loaders = Executors.newFixedThreadPool(Math.min(displayNames.size(),
+			Math.min(MAX_LOAD_THREADS, Runtime.getRuntime().availableProcessors())));
+		try
+		{
+			List<Future<?>> loads = new ArrayList<>();
+			for (String displayName : displayNames)
 			{
-				log.info("data for {} is null for some reason, setting it to a empty AccountData object", displayName);
-				accountData = new AccountData();
+				loads.add(loaders.submit(() ->
+				{
+					AccountData accountData = loadTrades(displayName);
+					accountsData.put(displayName, accountData);
+					onAccountLoaded.accept(displayName, accountData);
+					return null;
+				}));
+			}
+
+			for (Future<?> load : loads)
+			{
+				try
+				{
+					load.get();
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof IOException)
+					{
+						throw (IOException) e.getCause();
+					}
+					throw new IOException(e.getCause());
+				}
 			}
-			accountsData.put(displayName, accountData);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while loading trades", e);
+		}
+		finally
+		{
+			loaders.shutdownNow();
 		}
 
 		return accountsData;
 	}
 
+	/**
+	 * An account might only have a journal if the client closed unexpectedly before its first snapshot was written,
+	 * so accounts are found by looking at both snapshot and journal files.
+	 *
+	 * @return the display names of every account that has data in the parent directory
+	 */
+	private static Set<String> accountNames()
+	{
+		Set<String> displayNames = new LinkedHashSet<>();
+		for (File f : parentDirectory.listFiles())
+		{
+			if (isAccountDataFile(f.getName()) || f.getName().endsWith(SNAPSHOT_EXTENSION + BACKUP_EXTENSION)
+				|| f.getName().endsWith(BINARY_SNAPSHOT_EXTENSION + BACKUP_EXTENSION)
+				|| f.getName().endsWith(MANIFEST_EXTENSION + BACKUP_EXTENSION))
+			{
+				displayNames.add(f.getName().split("\\.")[0]);
+			}
+		}
+		return displayNames;
+	}
+
+	/**
+	 * Loads the summary of every account in the parent directory, without loading their trade histories where
+	 * possible (see {@link #loadSummary}).
+	 *
+	 * @return a map of display name to that account's summary
+	 * @throws IOException handled in FlippingPlugin
+	 */
+	public static Map<String, AccountSummary> loadAllSummaries() throws IOException
+	{
+		Map<String, AccountSummary> summaries = new ConcurrentHashMap<>();
+		for (String displayName : accountNames())
+		{
+			summaries.put(displayName, loadSummary(displayName));
+		}
+		return summaries;
+	}
+
+	/**
+	 * Loads the summary of an account. If the account has no summary yet, or its summary is older than its snapshot
+	 * (which happens when the snapshot was written by an older version of the plugin or converted to another format),
+	 * the account is loaded to compute the summary, which is then stored so that it is read directly next time.
+	 *
+	 * @param displayName the display name of the account
+	 * @return the summary of the account
+	 * @throws IOException handled in FlippingPlugin
+	 */
+	public static AccountSummary loadSummary(String displayName) throws IOException
+	{
+		synchronized (snapshotLock(displayName))
+		{
+			File accountFile = existingSnapshotFile(displayName);
+			File summaryFile = new File(parentDirectory, displayName + SUMMARY_EXTENSION);
+			if (accountFile != null && summaryFile.exists() && summaryFile.lastModified() >= accountFile.lastModified())
+			{
+				try
+				{
+					AccountSummary summary = readJsonFile(summaryFile, AccountSummary.class);
+					if (summary != null)
+					{
+						return summary;
+					}
+				}
+				catch (JsonParseException e)
+				{
+					log.info("summary for {} is unreadable, computing it again, error = {}", displayName, e);
+				}
+			}
+
+			log.info("computing summary for {}", displayName);
+			AccountData accountData = loadTrades(displayName);
+			AccountSummary summary = AccountSummary.of(accountData);
+			if (accountFile != null)
+			{
+				writeSummary(displayName, summary);
+			}
+			return summary;
+		}
+	}
+
+	private static void writeSummary(String displayName, AccountSummary summary) throws IOException
+	{
+		final Gson gson = new Gson();
+		writeAtomically(new File(parentDirectory, displayName + SUMMARY_EXTENSION),
+			gson.toJson(summary).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Only snapshots, manifests and journals hold an account's data, the other files in the parent directory are
+	 * written along with them. Shards are in their own directory and only matter once the manifest pointing at them
+	 * is written.
+	 *
+	 * @param fileName the name of a file in the parent directory
+	 * @return whether the file holds (part of) an account's data
+	 */
+	public static boolean isAccountDataFile(String fileName)
+	{
+		return fileName.endsWith(SNAPSHOT_EXTENSION) || fileName.endsWith(BINARY_SNAPSHOT_EXTENSION)
+			|| fileName.endsWith(MANIFEST_EXTENSION) || fileName.endsWith(JOURNAL_EXTENSION);
+	}
+
+	/**
+	 * A journal is appended to every flush interval while its account is logged in, so only a replaced snapshot or
+	 * manifest means another client has changed more of an account than the offers it journaled.
+	 *
+	 * @param fileName the name of a file in the parent directory
+	 * @return whether the file replaces the snapshot of an account
+	 */
+	public static boolean isSnapshotFile(String fileName)
+	{
+		return fileName.endsWith(SNAPSHOT_EXTENSION) || fileName.endsWith(BINARY_SNAPSHOT_EXTENSION)
+			|| fileName.endsWith(MANIFEST_EXTENSION);
+	}
+
 	public static AccountData loadTrades(String displayName) throws IOException
 	{
 		log.info("loading data for {}", displayName);
-		File accountFile = new File(PARENT_DIRECTORY, displayName + ".json");
-		AccountData accountData = loadFromFile(accountFile);
-		if (accountData == null)
+		synchronized (snapshotLock(displayName))
+		{
+			AccountData accountData = loadSnapshot(displayName);
+			if (accountData == null)
+			{
+				log.info("data for {} is null for some reason, setting it to a empty AccountData object", displayName);
+				accountData = new AccountData();
+			}
+			replayJournal(displayName, accountData);
+			return accountData;
+		}
+	}
+
+	/**
+	 * Loads the latest snapshot of an account that can be read. If the latest snapshot is unreadable, the snapshot
+	 * it replaced is used instead. If no snapshot can be read, they are renamed so that they are kept around rather
+	 * than overwritten, and null is returned.
+	 *
+	 * @param displayName the display name of the account
+	 * @return the account's data, or null if it has no readable snapshot
+	 */
+	private static AccountData loadSnapshot(String displayName)
+	{
+		List<File> generations = snapshotGenerations(displayName);
+		for (File f : generations)
 		{
-			log.info("data for {} is null for some reason, setting it to a empty AccountData object", displayName);
-			accountData = new AccountData();
+			try
+			{
+				AccountData accountData = isManifest(f) ? loadShards(displayName, f) : loadFromFile(f);
+				if (accountData != null)
+				{
+					if (f.getName().endsWith(BACKUP_EXTENSION))
+					{
+						log.info("using {} as the latest snapshot of {} couldn't be read", f.getName(), displayName);
+					}
+					return accountData;
+				}
+			}
+			catch (IOException | JsonParseException e)
+			{
+				log.info("{} couldn't be read, error = {}", f.getName(), e);
+			}
 		}
-		return accountData;
+
+		for (File f : generations)
+		{
+			log.info("no snapshot of {} could be read, keeping {} as {}", displayName, f.getName(), f.getName() + CORRUPT_EXTENSION);
+			if (!f.renameTo(new File(f.getParentFile(), f.getName() + CORRUPT_EXTENSION)))
+			{
+				log.info("unable to rename {}", f.getName());
+			}
+		}
+
+		//the shards go along with their manifests, so the next store doesn't write over them.
+		File shardDirectory = shardDirectory(displayName);
+		if (!generations.isEmpty() && shardDirectory.exists()
+			&& !shardDirectory.renameTo(new File(parentDirectory, shardDirectory.getName() + CORRUPT_EXTENSION)))
+		{
+			log.info("unable to rename {}", shardDirectory.getName());
+		}
+		return null;
+	}
+
+	/**
+	 * @return the snapshot files of an account that exist, from newest to oldest
+	 */
+	private static List<File> snapshotGenerations(String displayName)
+	{
+		List<File> generations = new ArrayList<>();
+		File accountFile = existingSnapshotFile(displayName);
+		if (accountFile != null)
+		{
+			generations.add(accountFile);
+		}
+
+		List<File> backups = new ArrayList<>();
+		for (FlippingConfig.StorageFormat format : FlippingConfig.StorageFormat.values())
+		{
+			File backupFile = backupFile(snapshotFile(displayName, format));
+			if (backupFile.exists())
+			{
+				backups.add(backupFile);
+			}
+		}
+		if (backupFile(manifestFile(displayName)).exists())
+		{
+			backups.add(backupFile(manifestFile(displayName)));
+		}
+		backups.sort(Comparator.comparingLong(File::lastModified).reversed());
+		generations.addAll(backups);
+		return generations;
 	}
 
+	/**
+	 * Loads an account's snapshot, streaming it from disk so that the file's contents never have to be held in
+	 * memory next to the objects that are built from it. If the snapshot has a checksum, the checksum is verified
+	 * before the snapshot is parsed.
+	 *
+	 * @throws IOException if the file can't be read or its checksum doesn't match its contents
+	 */
 	private static AccountData loadFromFile(File f) throws IOException
 	{
-		String accountDataJson = new String(Files.readAllBytes(f.toPath()));
-		final Gson gson = new Gson();
+		boolean checksummed = verifyChecksum(f);
+		if (!checksummed)
+		{
+			verifyChecksumField(f);
+		}
+		try (BufferedInputStream file = new BufferedInputStream(new FileInputStream(f)))
+		{
+			InputStream in = file;
+			if (checksummed)
+			{
+				readHeader(file, new byte[CHECKSUM_HEADER_LENGTH]);
+				//only snapshots with a checksum can be compressed
+				if (isCompressed(file))
+				{
+					in = new BufferedInputStream(new GZIPInputStream(file));
+				}
+			}
+
+			if (AccountDataCodec.isEncoded(in))
+			{
+				return AccountDataCodec.decode(in);
+			}
+
+			//checksummed snapshots are always written as utf-8
+			if (checksummed)
+			{
+				return readJson(new InputStreamReader(in, StandardCharsets.UTF_8), AccountData.class);
+			}
+		}
+
 		Type type = new TypeToken<AccountData>()
 		{
 		}.getType();
-		AccountData accountData = gson.fromJson(accountDataJson, type);
-		return accountData;
+		return readJsonFile(f, type);
 	}
 
 	/**
-	 * stores trades for an account in {user's home directory}/.runelite/flipping/{account's display name}.json
+	 * Checks the checksum of a snapshot against the rest of its contents.
 	 *
-	 * @param displayName display name of the account the data is associated with
-	 * @param data        the trades and last offers of that account
-	 * @throws IOException
+	 * @return whether the file starts with a checksum, snapshots written by older versions of the plugin don't
+	 * @throws IOException if the checksum doesn't match, which means the file was corrupted after it was written
 	 */
-	public static void storeTrades(String displayName, AccountData data) throws IOException
+	private static boolean verifyChecksum(File f) throws IOException
 	{
-		log.info("storing trades for {}", displayName);
-		File accountFile = new File(PARENT_DIRECTORY, displayName + ".json");
-		final Gson gson = new Gson();
-		final String json = gson.toJson(data);
-		Files.write(accountFile.toPath(), json.getBytes());
+		try (InputStream in = new BufferedInputStream(new FileInputStream(f)))
+		{
+			byte[] header = new byte[CHECKSUM_HEADER_LENGTH];
+			if (readHeader(in, header) < header.length)
+			{
+				return false;
+			}
+
+			String headerLine = new String(header, StandardCharsets.UTF_8);
+			if (!headerLine.startsWith(CHECKSUM_PREFIX))
+			{
+				return false;
+			}
+
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				crc.update(buffer, 0, read);
+			}
+
+			if (!headerLine.equals(checksumHeader(crc.getValue())))
+			{
+				throw new IOException(f.getName() + " is corrupt, its checksum doesn't match its contents");
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Checks the checksum field at the end of a plain json snapshot against the rest of its contents.
+	 *
+	 * @throws IOException if the checksum doesn't match, which means the file was corrupted after it was written
+	 */
+	private static void verifyChecksumField(File f) throws IOException
+	{
+		long contentLength = f.length() - CHECKSUM_FIELD_LENGTH;
+		if (contentLength <= 0)
+		{
+			return;
+		}
+
+		try (InputStream in = new BufferedInputStream(new FileInputStream(f)))
+		{
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[8192];
+			long remaining = contentLength;
+			while (remaining > 0)
+			{
+				int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (read == -1)
+				{
+					return;
+				}
+				crc.update(buffer, 0, read);
+				remaining -= read;
+			}
+			crc.update('}');
+
+			byte[] field = new byte[CHECKSUM_FIELD_LENGTH];
+			String fieldText = new String(field, 0, readHeader(in, field), StandardCharsets.UTF_8);
+			if (fieldText.startsWith(CHECKSUM_FIELD_PREFIX) && !fieldText.equals(checksumField(crc.getValue())))
+			{
+				throw new IOException(f.getName() + " is corrupt, its checksum doesn't match its contents");
+			}
+		}
+	}
+
+	private static boolean isCompressed(BufferedInputStream in) throws IOException
+	{
+		in.mark(2);
+		int magic = in.read() | (in.read() << 8);
+		in.reset();
+		return magic == GZIPInputStream.GZIP_MAGIC;
+	}
+
+	private static int readHeader(InputStream in, byte[] header) throws IOException
+	{
+		int total = 0;
+		while (total < header.length)
+		{
+			int read = in.read(header, total, header.length - total);
+			if (read == -1)
+			{
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	private static String checksumHeader(long checksum)
+	{
+		return String.format("%s%08x\n", CHECKSUM_PREFIX, checksum);
+	}
+
+	private static String checksumField(long checksum)
+	{
+		return String.format("%s%08x\"}", CHECKSUM_FIELD_PREFIX, checksum);
+	}
+
+	/**
+	 * Deserializes a json file as it is read. Files are written as utf-8, but files written by older versions of the
+	 * plugin used the platform's charset, so if the file isn't valid utf-8 it is read again using that charset.
+	 */
+	private static <T> T readJsonFile(File f, Type type) throws IOException
+	{
+		try (Reader reader = new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8.newDecoder()))
+		{
+			return readJson(reader, type);
+		}
+		catch (JsonParseException e)
+		{
+			if (!(e.getCause() instanceof CharacterCodingException))
+			{
+				throw e;
+			}
+
+			log.info("{} is not valid utf-8, reading it with the platform's charset", f.getName());
+			try (Reader reader = new InputStreamReader(new FileInputStream(f), Charset.defaultCharset()))
+			{
+				return readJson(reader, type);
+			}
+		}
+	}
+
+	private static <T> T readJson(Reader reader, Type type)
+	{
+		final Gson gson = new Gson();
+		return gson.fromJson(new JsonReader(reader), type);
+	}
+
+	private static void writeSnapshot(AccountData data, FlippingConfig.StorageFormat format, OutputStream out) throws IOException
+	{
+		if (format == FlippingConfig.StorageFormat.BINARY)
+		{
+			AccountDataCodec.encode(data, out);
+			return;
+		}
+
+		final Gson gson = new Gson();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		gson.toJson(data, writer);
+		writer.flush();
+	}
+
+	private static byte[] encode(AccountData data, FlippingConfig.StorageFormat format) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeSnapshot(data, format, out);
+		return out.toByteArray();
+	}
+
+	private static AccountData decode(byte[] data, FlippingConfig.StorageFormat format) throws IOException
+	{
+		if (format == FlippingConfig.StorageFormat.BINARY)
+		{
+			return AccountDataCodec.decode(new ByteArrayInputStream(data));
+		}
+
+		return readJson(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8), AccountData.class);
+	}
+
+	private static Object snapshotLock(String displayName)
+	{
+		return SNAPSHOT_LOCKS.computeIfAbsent(displayName, k -> new Object());
+	}
+
+	private static File backupFile(File snapshotFile)
+	{
+		return new File(snapshotFile.getParentFile(), snapshotFile.getName() + BACKUP_EXTENSION);
+	}
+
+	private static File snapshotFile(String displayName, FlippingConfig.StorageFormat format)
+	{
+		String extension = format == FlippingConfig.StorageFormat.BINARY ? BINARY_SNAPSHOT_EXTENSION : SNAPSHOT_EXTENSION;
+		return new File(parentDirectory, displayName + extension);
+	}
+
+	/**
+	 * An account's snapshot is in whichever format (or layout) it was last stored in. If there are snapshots in more
+	 * than one (the client closed right after the format was changed), the newest one is used.
+	 *
+	 * @return the account's snapshot file, or its manifest if it is stored in shards, or null if it has neither.
+	 */
+	private static File existingSnapshotFile(String displayName)
+	{
+		File newest = null;
+		for (File f : new File[]{snapshotFile(displayName, FlippingConfig.StorageFormat.BINARY),
+			snapshotFile(displayName, FlippingConfig.StorageFormat.JSON), manifestFile(displayName)})
+		{
+			if (f.exists() && (newest == null || f.lastModified() > newest.lastModified()))
+			{
+				newest = f;
+			}
+		}
+		return newest;
+	}
+
+	private static File manifestFile(String displayName)
+	{
+		return new File(parentDirectory, displayName + MANIFEST_EXTENSION);
+	}
+
+	private static File shardDirectory(String displayName)
+	{
+		return new File(parentDirectory, displayName + SHARD_DIRECTORY_EXTENSION);
+	}
+
+	private static boolean isManifest(File f)
+	{
+		return f.getName().endsWith(MANIFEST_EXTENSION) || f.getName().endsWith(MANIFEST_EXTENSION + BACKUP_EXTENSION);
+	}
+
+	private static FlippingConfig.StorageFormat formatOf(File snapshotFile)
+	{
+		if (isManifest(snapshotFile))
+		{
+			//the shards are all in the format the account was last fully stored in
+			File[] shardFiles = shardDirectory(snapshotFile.getName().split("\\.")[0]).listFiles();
+			return shardFiles != null && Arrays.stream(shardFiles).anyMatch(f -> f.getName().endsWith(BINARY_SNAPSHOT_EXTENSION)) ?
+				FlippingConfig.StorageFormat.BINARY : FlippingConfig.StorageFormat.JSON;
+		}
+		return snapshotFile.getName().endsWith(BINARY_SNAPSHOT_EXTENSION) ? FlippingConfig.StorageFormat.BINARY :
+			FlippingConfig.StorageFormat.JSON;
+	}
+
+	/**
+	 * Applies every journal entry that isn't already part of the snapshot onto the account's data. A malformed
+	 * line can only be the last one (the client closed mid append), so replaying stops there.
+	 *
+	 * @param displayName display name of the account the journal belongs to
+	 * @param accountData the account's data as loaded from its snapshot
+	 */
+	private static void replayJournal(String displayName, AccountData accountData) throws IOException
+	{
+		//a sealed journal only exists if a compaction was interrupted, its entries come before the active journal's.
+		replayJournal(displayName, new File(parentDirectory, displayName + SEALED_JOURNAL_EXTENSION), accountData);
+		replayJournal(displayName, new File(parentDirectory, displayName + JOURNAL_EXTENSION), accountData);
+	}
+
+	private static void replayJournal(String displayName, File journalFile, AccountData accountData) throws IOException
+	{
+		if (!journalFile.exists())
+		{
+			return;
+		}
+
+		final Gson gson = new Gson();
+		int entriesReplayed = 0;
+		try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				JournalEntry entry;
+				try
+				{
+					entry = gson.fromJson(line, JournalEntry.class);
+				}
+				catch (JsonParseException e)
+				{
+					log.info("journal for {} has a malformed entry, ignoring the rest of it. error = {}", displayName, e);
+					break;
+				}
+
+				if (entry == null || entry.getSequence() <= accountData.getJournalSequence())
+				{
+					continue;
+				}
+
+				applyJournalEntry(accountData, entry);
+				entriesReplayed++;
+			}
+		}
+		log.info("replayed {} journal entries for {}", entriesReplayed, displayName);
+	}
+
+	private static void applyJournalEntry(AccountData accountData, JournalEntry entry)
+	{
+		if (entry.getOffer() != null)
+		{
+			OfferInfo offer = entry.getOffer();
+			//this mirrors what FlippingPlugin.isBadOffer does with an offer it accepts
+			accountData.getLastOffers().put(offer.getSlot(), offer.clone());
+			accountData.applyOffer(offer, entry.getItemName(), entry.getGeLimit());
+		}
+
+		accountData.setJournalSequence(entry.getSequence());
+	}
+
+	/**
+	 * appends an entry to the account's journal in {user's home directory}/.runelite/flipping/{displayName}.journal
+	 *
+	 * @param displayName display name of the account the entry is associated with
+	 * @param entry       the entry to append
+	 * @throws IOException
+	 */
+	public static void appendToJournal(String displayName, JournalEntry entry) throws IOException
+	{
+		appendToJournal(displayName, Collections.singletonList(entry));
+	}
+
+	/**
+	 * appends several entries to the account's journal with a single write.
+	 *
+	 * @param displayName display name of the account the entries are associated with
+	 * @param entries     the entries to append, in order of their sequence number
+	 * @throws IOException
+	 */
+	public static void appendToJournal(String displayName, List<JournalEntry> entries) throws IOException
+	{
+		File journalFile = new File(parentDirectory, displayName + JOURNAL_EXTENSION);
+		final Gson gson = new Gson();
+		StringBuilder lines = new StringBuilder();
+		for (JournalEntry entry : entries)
+		{
+			lines.append(gson.toJson(entry)).append(System.lineSeparator());
+		}
+		Files.write(journalFile.toPath(), lines.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+			StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Finds the sequence number of the last journal entry of an account on disk, whether it has been folded into the
+	 * account's snapshot or is still in one of its journals. If it is past the sequence number of the account's data
+	 * in the cache, another client has journaled offers the cache doesn't have, and the account has to be loaded
+	 * again before any entries are appended to its journal. Otherwise the new entries would reuse sequence numbers
+	 * that are already taken and be skipped when the journal is replayed.
+	 *
+	 * @param displayName display name of the account
+	 * @return the sequence number of the last journal entry of the account
+	 * @throws IOException
+	 */
+	public static long latestJournalSequence(String displayName) throws IOException
+	{
+		synchronized (snapshotLock(displayName))
+		{
+			long sequence = existingSnapshotFile(displayName) == null ? 0 : loadSummary(displayName).getJournalSequence();
+			for (String extension : new String[]{SEALED_JOURNAL_EXTENSION, JOURNAL_EXTENSION})
+			{
+				File journalFile = new File(parentDirectory, displayName + extension);
+				if (!journalFile.exists())
+				{
+					continue;
+				}
+
+				final Gson gson = new Gson();
+				try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8))
+				{
+					String line;
+					while ((line = reader.readLine()) != null)
+					{
+						JournalEntry entry;
+						try
+						{
+							entry = gson.fromJson(line, JournalEntry.class);
+						}
+						catch (JsonParseException e)
+						{
+							//replaying stops at a malformed line as well
+							break;
+						}
+
+						if (entry != null)
+						{
+							sequence = Math.max(sequence, entry.getSequence());
+						}
+					}
+				}
+			}
+			return sequence;
+		}
+	}
+
+	/**
+	 * stores trades for an account in {user's home directory}/.runelite/flipping/{account's display name}.json, or
+	 * {account's display name}.dat if stored in the binary format. Since the snapshot contains everything in the
+	 * account's journal, the journal is deleted afterwards.
+	 *
+	 * @param displayName display name of the account the data is associated with
+	 * @param data        the trades and last offers of that account
+	 * @param format      the format to store the data in
+	 * @throws IOException
+	 */
+	public static void storeTrades(String displayName, AccountData data, FlippingConfig.StorageFormat format) throws IOException
+	{
+		log.info("storing trades for {}", displayName);
+		synchronized (snapshotLock(displayName))
+		{
+			//a snapshot left in another format or layout would otherwise be loaded if it happens to be newer
+			if (shardedStorage)
+			{
+				writeShards(displayName, data, format);
+				for (String extension : new String[]{SNAPSHOT_EXTENSION, BINARY_SNAPSHOT_EXTENSION})
+				{
+					deleteFile(displayName + extension);
+					deleteFile(displayName + extension + BACKUP_EXTENSION);
+				}
+			}
+			else
+			{
+				writeSnapshotFile(snapshotFile(displayName, format), data, format);
+				String otherExtension = format == FlippingConfig.StorageFormat.BINARY ? SNAPSHOT_EXTENSION : BINARY_SNAPSHOT_EXTENSION;
+				deleteFile(displayName + otherExtension);
+				deleteFile(displayName + otherExtension + BACKUP_EXTENSION);
+				deleteShards(displayName);
+			}
+			writeSummary(displayName, AccountSummary.of(data));
+			data.clearChanges();
+			//if we are stopped before the journals are deleted, the entries in them are skipped on load as the snapshot
+			//records the sequence number of the last entry it contains.
+			deleteFile(displayName + SEALED_JOURNAL_EXTENSION);
+			deleteFile(displayName + JOURNAL_EXTENSION);
+		}
+	}
+
+	/**
+	 * Stores an account in shards (see {@link ShardManifest}). Only the shards holding items that changed since the
+	 * account was last stored are written, unless the account has no readable manifest yet or needs a full snapshot,
+	 * in which case every shard is. The new shard files are written before the manifest that points at them, and the
+	 * previous manifest (or the existing backup, if the previous manifest is unreadable) is kept as the backup generation
+	 * along with the shard files it points at, so a crash at any point leaves a complete generation to load.
+	 */
+	private static void writeShards(String displayName, AccountData data, FlippingConfig.StorageFormat format) throws IOException
+	{
+		File manifestFile = manifestFile(displayName);
+		ShardManifest previous = readManifest(manifestFile);
+		//an unreadable manifest isn't kept as the backup generation, the current backup is kept instead
+		ShardManifest backup = previous != null ? previous : readManifest(backupFile(manifestFile));
+
+		Map<Integer, List<FlippingItem>> shards = data.getTrades().stream()
+			.collect(Collectors.groupingBy(item -> ShardManifest.shardOf(item.getItemId())));
+		Map<Integer, String> shardFiles = new HashMap<>();
+		Set<Integer> changedShards = new HashSet<>();
+		if (previous == null || previous.getShardFiles() == null || data.isSnapshotRequired())
+		{
+			changedShards.addAll(shards.keySet());
+		}
+		else
+		{
+			shardFiles.putAll(previous.getShardFiles());
+			data.getChangedItemIds().forEach(itemId -> changedShards.add(ShardManifest.shardOf(itemId)));
+			//shards whose items were all removed
+			shardFiles.keySet().stream().filter(shard -> !shards.containsKey(shard)).forEach(changedShards::add);
+		}
+
+		File shardDirectory = shardDirectory(displayName);
+		if (!shardDirectory.exists() && !shardDirectory.mkdirs())
+		{
+			throw new IOException("unable to create shard directory for " + displayName);
+		}
+
+		//the generation is also past that of every shard file on disk, in case a manifest pointing at them couldn't be
+		//read
+		long generation = Math.max(backup == null ? 0 : backup.getGeneration(), latestShardGeneration(shardDirectory)) + 1;
+		String extension = format == FlippingConfig.StorageFormat.BINARY ? BINARY_SNAPSHOT_EXTENSION : SNAPSHOT_EXTENSION;
+		for (int shard : changedShards)
+		{
+			List<FlippingItem> items = shards.get(shard);
+			if (items == null)
+			{
+				shardFiles.remove(shard);
+				continue;
+			}
+
+			AccountData shardData = new AccountData();
+			shardData.setTrades(items);
+			String shardFileName = shard + "." + generation + extension;
+			writeSnapshotFile(new File(shardDirectory, shardFileName), shardData, format);
+			shardFiles.put(shard, shardFileName);
+		}
+		log.info("wrote {} of {} shards for {}", changedShards.size(), shardFiles.size(), displayName);
+
+		final Gson gson = new Gson();
+		writeAtomically(manifestFile, gson.toJson(ShardManifest.of(generation, shardFiles, data)).getBytes(StandardCharsets.UTF_8),
+			previous != null);
+		data.setShardFiles(new HashMap<>(shardFiles));
+
+		//shard files that neither the new manifest nor the backup manifest point at are no longer needed
+		Set<String> referencedFiles = new HashSet<>(shardFiles.values());
+		if (backup != null && backup.getShardFiles() != null)
+		{
+			referencedFiles.addAll(backup.getShardFiles().values());
+		}
+		for (File f : shardDirectory.listFiles())
+		{
+			if (!referencedFiles.contains(f.getName()) && !f.delete())
+			{
+				log.info("unable to delete {}", f.getName());
+			}
+		}
+	}
+
+	/**
+	 * @return the manifest in the file, or null if the file doesn't exist or can't be parsed
+	 */
+	private static ShardManifest readManifest(File manifestFile) throws IOException
+	{
+		if (!manifestFile.exists())
+		{
+			return null;
+		}
+
+		try
+		{
+			return readJsonFile(manifestFile, ShardManifest.class);
+		}
+		catch (JsonParseException e)
+		{
+			log.info("{} is unreadable, error = {}", manifestFile.getName(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the largest generation any of the shard files in the directory were written in, or 0 if it has none
+	 */
+	private static long latestShardGeneration(File shardDirectory)
+	{
+		long generation = 0;
+		File[] shardFiles = shardDirectory.listFiles();
+		if (shardFiles == null)
+		{
+			return generation;
+		}
+
+		//shard files are named {shard}.{generation}{extension}
+		for (File shardFile : shardFiles)
+		{
+			String[] parts = shardFile.getName().split("\\.");
+			try
+			{
+				generation = Math.max(generation, Long.parseLong(parts[1]));
+			}
+			catch (ArrayIndexOutOfBoundsException | NumberFormatException e)
+			{
+				log.info("{} is not a shard file", shardFile.getName());
+			}
+		}
+		return generation;
+	}
+
+	/**
+	 * Loads an account stored in shards from the given manifest, or its backup.
+	 *
+	 * @throws IOException if the manifest or one of its shards can't be read
+	 */
+	private static AccountData loadShards(String displayName, File manifestFile) throws IOException
+	{
+		ShardManifest manifest = readJsonFile(manifestFile, ShardManifest.class);
+		if (manifest == null)
+		{
+			return null;
+		}
+		return loadShards(displayName, manifest, new HashMap<>());
+	}
+
+	/**
+	 * @param loadedShards the items of shards that are already in memory and don't have to be read again
+	 */
+	private static AccountData loadShards(String displayName, ShardManifest manifest, Map<Integer, List<FlippingItem>> loadedShards) throws IOException
+	{
+		if (manifest.getAccount() == null || manifest.getShardFiles() == null)
+		{
+			throw new IOException("manifest of " + displayName + " is incomplete");
+		}
+
+		List<FlippingItem> items = new ArrayList<>();
+		for (Map.Entry<Integer, String> shard : manifest.getShardFiles().entrySet())
+		{
+			List<FlippingItem> shardItems = loadedShards.get(shard.getKey());
+			if (shardItems == null)
+			{
+				AccountData shardData = loadFromFile(new File(shardDirectory(displayName), shard.getValue()));
+				if (shardData == null)
+				{
+					throw new IOException("shard " + shard.getValue() + " of " + displayName + " is empty");
+				}
+				shardItems = shardData.getTrades();
+			}
+			items.addAll(shardItems);
+		}
+
+		AccountData accountData = manifest.getAccount();
+		accountData.setTrades(manifest.order(items));
+		accountData.setShardFiles(new HashMap<>(manifest.getShardFiles()));
+		return accountData;
+	}
+
+	/**
+	 * Loads an account again after another client stored it. If the account is stored in shards and the data in the
+	 * cache was loaded from the same point in the account's journal as the new manifest, only the shards the other
+	 * client rewrote are read and the rest of the items are taken from the cache.
+	 *
+	 * @param displayName the display name of the account
+	 * @param cached      the account's data currently in the cache, or null if it isn't in the cache
+	 * @return the account's data
+	 * @throws IOException handled in FlippingPlugin
+	 */
+	public static AccountData reloadTrades(String displayName, AccountData cached) throws IOException
+	{
+		synchronized (snapshotLock(displayName))
+		{
+			File accountFile = existingSnapshotFile(displayName);
+			if (cached == null || cached.getShardFiles() == null || accountFile == null || !isManifest(accountFile))
+			{
+				return loadTrades(displayName);
+			}
+
+			try
+			{
+				ShardManifest manifest = readJsonFile(accountFile, ShardManifest.class);
+				//the cached items have the journal entries after their snapshot applied, which would be applied again
+				if (manifest == null || manifest.getAccount() == null || manifest.getShardFiles() == null
+					|| manifest.getAccount().getJournalSequence() != cached.getJournalSequence())
+				{
+					return loadTrades(displayName);
+				}
+
+				Map<Integer, List<FlippingItem>> unchangedShards = cached.getTrades().stream()
+					.filter(item ->
+					{
+						int shard = ShardManifest.shardOf(item.getItemId());
+						return Objects.equals(manifest.getShardFiles().get(shard), cached.getShardFiles().get(shard));
+					})
+					.collect(Collectors.groupingBy(item -> ShardManifest.shardOf(item.getItemId())));
+
+				log.info("reloading {} of {} shards for {}", manifest.getShardFiles().size() - unchangedShards.size(),
+					manifest.getShardFiles().size(), displayName);
+				AccountData accountData = loadShards(displayName, manifest, unchangedShards);
+				replayJournal(displayName, accountData);
+				return accountData;
+			}
+			catch (IOException | JsonParseException e)
+			{
+				log.info("couldn't reload the changed shards of {}, loading it again, error = {}", displayName, e);
+				return loadTrades(displayName);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the manifests and shards of an account.
+	 */
+	public static void deleteShards(String displayName)
+	{
+		deleteFile(displayName + MANIFEST_EXTENSION);
+		deleteFile(displayName + MANIFEST_EXTENSION + BACKUP_EXTENSION);
+		File shardDirectory = shardDirectory(displayName);
+		File[] shardFiles = shardDirectory.listFiles();
+		if (shardFiles == null)
+		{
+			return;
+		}
+
+		for (File shardFile : shardFiles)
+		{
+			if (!shardFile.delete())
+			{
+				log.info("unable to delete {}", shardFile.getName());
+			}
+		}
+		if (shardDirectory.delete())
+		{
+			log.info("{} deleted", shardDirectory.getName());
+		}
+	}
+
+	/**
+	 * Moves the offers of an account that were made before the cutoff out of its history and into the account's
+	 * archive on disk, leaving only their aggregates (see {@link ArchivedHistory}) in the history. The offers are
+	 * added to the archive before they are removed from the history, and offers already in the archive aren't added
+	 * again, so if the client closes before the next snapshot is written the same offers are simply archived again.
+	 * The account's next save writes a full snapshot as removing offers isn't journaled.
+	 *
+	 * @param displayName display name of the account
+	 * @param data        the account's data, which is modified so it should be the data in the cache
+	 * @param cutoff      the time before which offers are archived
+	 * @return the amount of offers that were archived
+	 * @throws IOException
+	 */
+	public static int archiveOffers(String displayName, AccountData data, Instant cutoff) throws IOException
+	{
+		Map<String, Map<Integer, List<OfferInfo>>> segments = new HashMap<>();
+		for (FlippingItem item : data.getTrades())
+		{
+			for (OfferInfo offer : item.getHistory().offersToArchive(cutoff))
+			{
+				segments.computeIfAbsent(ARCHIVE_SEGMENT_FORMAT.format(offer.getTime()), k -> new HashMap<>())
+					.computeIfAbsent(item.getItemId(), k -> new ArrayList<>())
+					.add(offer);
+			}
+		}
+
+		if (segments.isEmpty())
+		{
+			return 0;
+		}
+
+		log.info("archiving offers of {} made before {}", displayName, cutoff);
+		File accountArchive = new File(new File(parentDirectory, ARCHIVE_DIRECTORY_NAME), displayName);
+		if (!accountArchive.exists() && !accountArchive.mkdirs())
+		{
+			throw new IOException("unable to create archive directory for " + displayName);
+		}
+
+		final Gson gson = new Gson();
+		Type segmentType = new TypeToken<Map<Integer, List<OfferInfo>>>()
+		{
+		}.getType();
+		synchronized (snapshotLock(displayName))
+		{
+			for (Map.Entry<String, Map<Integer, List<OfferInfo>>> segment : segments.entrySet())
+			{
+				File segmentFile = new File(accountArchive, segment.getKey() + SNAPSHOT_EXTENSION);
+				Map<Integer, List<OfferInfo>> archivedOffers = segmentFile.exists() ? readJsonFile(segmentFile, segmentType) : null;
+				if (archivedOffers == null)
+				{
+					archivedOffers = new HashMap<>();
+				}
+
+				for (Map.Entry<Integer, List<OfferInfo>> itemOffers : segment.getValue().entrySet())
+				{
+					//OfferInfo's equals only compares a few fields, so offers are compared by their json instead
+					List<OfferInfo> offers = archivedOffers.computeIfAbsent(itemOffers.getKey(), k -> new ArrayList<>());
+					Set<String> existingOffers = offers.stream().map(gson::toJson).collect(Collectors.toSet());
+					itemOffers.getValue().stream().filter(offer -> !existingOffers.contains(gson.toJson(offer))).forEach(offers::add);
+				}
+
+				writeAtomically(segmentFile, gson.toJson(archivedOffers, segmentType).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		int numArchived = 0;
+		for (FlippingItem item : data.getTrades())
+		{
+			numArchived += item.getHistory().archiveOffersBefore(cutoff).size();
+		}
+		data.setSnapshotRequired(true);
+		log.info("archived {} offers of {}", numArchived, displayName);
+		return numArchived;
+	}
+
+	public static void deleteArchive(String displayName)
+	{
+		File accountArchive = new File(new File(parentDirectory, ARCHIVE_DIRECTORY_NAME), displayName);
+		File[] segmentFiles = accountArchive.listFiles();
+		if (segmentFiles == null)
+		{
+			return;
+		}
+
+		for (File segmentFile : segmentFiles)
+		{
+			if (!segmentFile.delete())
+			{
+				log.info("unable to delete {}", segmentFile.getName());
+			}
+		}
+		if (accountArchive.delete())
+		{
+			log.info("archive of {} deleted", displayName);
+		}
+	}
+
+	/**
+	 * Folds an account's journal into its snapshot without touching the in memory data of the account, so it can be
+	 * done on a background thread. The journal is first sealed by renaming it, which makes any further entries go to
+	 * a new journal. The sealed journal is then replayed on top of the snapshot on disk and the result is written
+	 * to a temp file, synced to disk and atomically moved over the old snapshot before the sealed journal is dropped.
+	 * If the client closes at any point during this, loading the account still gives the same result as the sealed
+	 * journal is replayed along with the active one. Accounts stored in shards only have the shards of the items in
+	 * the sealed journal rewritten.
+	 *
+	 * @param displayName display name of the account whose journal should be compacted
+	 * @throws IOException
+	 */
+	public static void compactJournal(String displayName) throws IOException
+	{
+		File journalFile = new File(parentDirectory, displayName + JOURNAL_EXTENSION);
+		File sealedJournalFile = new File(parentDirectory, displayName + SEALED_JOURNAL_EXTENSION);
+
+		synchronized (snapshotLock(displayName))
+		{
+			//a sealed journal left over from an interrupted compaction is folded in first, the active journal will be
+			//picked up by the next compaction.
+			if (!sealedJournalFile.exists())
+			{
+				if (!journalFile.exists())
+				{
+					return;
+				}
+				Files.move(journalFile.toPath(), sealedJournalFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+
+			log.info("compacting journal for {}", displayName);
+			//the snapshot is kept in whatever format and layout it is already in
+			File accountFile = existingSnapshotFile(displayName);
+			FlippingConfig.StorageFormat format = accountFile != null ? formatOf(accountFile) : FlippingConfig.StorageFormat.JSON;
+			AccountData accountData = loadSnapshot(displayName);
+			if (accountData == null)
+			{
+				accountData = new AccountData();
+			}
+			replayJournal(displayName, sealedJournalFile, accountData);
+
+			if (accountFile != null && isManifest(accountFile))
+			{
+				writeShards(displayName, accountData, format);
+			}
+			else
+			{
+				writeSnapshotFile(snapshotFile(displayName, format), accountData, format);
+			}
+			writeSummary(displayName, AccountSummary.of(accountData));
+			deleteFile(sealedJournalFile.getName());
+		}
+	}
+
+	/**
+	 * Writes a snapshot to a temp file next to the given file, along with the checksum of its contents, and forces it
+	 * to disk. The current snapshot is then kept as the backup generation and the temp file is moved in its place, so
+	 * a crash while writing can never leave a half written snapshot behind. If snapshots are compressed, everything
+	 * after the checksum is gzipped and the checksum is of the compressed bytes.
+	 */
+	private static void writeSnapshotFile(File file, AccountData data, FlippingConfig.StorageFormat format) throws IOException
+	{
+		boolean plainJson = format == FlippingConfig.StorageFormat.JSON && !compressSnapshots;
+		File tempFile = new File(file.getParentFile(), file.getName() + TEMP_EXTENSION);
+		try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			//the checksum is only known once everything is written, so the header is filled in afterwards.
+			if (!plainJson)
+			{
+				channel.write(ByteBuffer.wrap(checksumHeader(0).getBytes(StandardCharsets.UTF_8)));
+			}
+			CRC32 crc = new CRC32();
+			OutputStream checked = new CheckedOutputStream(Channels.newOutputStream(channel), crc);
+			GZIPOutputStream gzip = compressSnapshots ? new GZIPOutputStream(checked, 8192) : null;
+			OutputStream out = new BufferedOutputStream(gzip != null ? gzip : checked);
+			writeSnapshot(data, format, out);
+			out.flush();
+			if (gzip != null)
+			{
+				gzip.finish();
+			}
+
+			if (plainJson)
+			{
+				//the field goes in place of the object's closing brace, which the field ends with. Account data
+				//always has some fields, so the object is never empty.
+				channel.truncate(channel.size() - 1);
+				ByteBuffer field = ByteBuffer.wrap(checksumField(crc.getValue()).getBytes(StandardCharsets.UTF_8));
+				while (field.hasRemaining())
+				{
+					channel.write(field);
+				}
+			}
+			else
+			{
+				ByteBuffer header = ByteBuffer.wrap(checksumHeader(crc.getValue()).getBytes(StandardCharsets.UTF_8));
+				while (header.hasRemaining())
+				{
+					channel.write(header, header.position());
+				}
+			}
+			channel.force(true);
+		}
+
+		if (file.exists())
+		{
+			Files.move(file.toPath(), backupFile(file).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		moveAtomically(tempFile, file);
+	}
+
+	/**
+	 * Writes the data to a temp file next to the given file, forces it to disk and then moves it over the given file,
+	 * so that the file either has its old or its new contents, never something in between.
+	 */
+	private static void writeAtomically(File file, byte[] data) throws IOException
+	{
+		writeAtomically(file, data, false);
+	}
+
+	/**
+	 * @param keepBackup whether the file's current contents should be kept in {file}.bak
+	 */
+	private static void writeAtomically(File file, byte[] data, boolean keepBackup) throws IOException
+	{
+		File tempFile = new File(file.getParentFile(), file.getName() + TEMP_EXTENSION);
+		try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+			StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+
+		if (keepBackup && file.exists())
+		{
+			Files.move(file.toPath(), backupFile(file).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		moveAtomically(tempFile, file);
+	}
+
+	private static void moveAtomically(File tempFile, File file) throws IOException
+	{
+		try
+		{
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
 	}
 
 	public static long lastModified(String fileName)
 	{
-		return new File(PARENT_DIRECTORY, fileName).lastModified();
+		return new File(parentDirectory, fileName).lastModified();
 	}
 
 	public static void deleteFile(String fileName)
 	{
-		File accountFile = new File(PARENT_DIRECTORY, fileName);
+		File accountFile = new File(parentDirectory, fileName);
 		if (accountFile.exists())
 		{
 			if (accountFile.delete())
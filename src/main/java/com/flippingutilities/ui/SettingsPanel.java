@@ -34,7 +34,6 @@ import java.awt.Font;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import javax.swing.Box;
@@ -156,7 +155,7 @@ public class SettingsPanel extends JPanel
 			accountSelectionPanel.removeAll();
 			settingsBasePanel.removeAll();
 			accountLabels.clear();
-			Set<String> accountsWithHistory = new HashSet<>(plugin.getAccountCache().keySet());
+			Set<String> accountsWithHistory = plugin.getAccountsWithHistory();
 			for (String name : accountsWithHistory)
 			{
 				JLabel accountLabel = accountLabel(name);
@@ -32,19 +32,21 @@ import com.flippingutilities.HistoryManager;
 import static com.flippingutilities.ui.utilities.UIUtilities.ICON_SIZE;
 import static com.flippingutilities.ui.utilities.UIUtilities.RESET_HOVER_ICON;
 import static com.flippingutilities.ui.utilities.UIUtilities.RESET_ICON;
+import com.flippingutilities.ui.utilities.RebuildScheduler;
+import com.flippingutilities.ui.utilities.VirtualList;
 import com.google.common.base.Strings;
 import java.awt.BorderLayout;
 import java.awt.CardLayout;
 import java.awt.Dimension;
-import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
@@ -81,21 +83,18 @@ public class FlippingPanel extends JPanel
 	private final FlippingPlugin plugin;
 	private final ItemManager itemManager;
 
-	//Main item panel that holds all the shown items.
-	private final JPanel flippingItemsPanel = new JPanel();
+	//Main item panel that holds all the shown items, which only has panels for the items scrolled into view.
+	private final VirtualList<FlippingItem, FlippingItemPanel> flippingItemsPanel = new VirtualList<>(this::createItemPanel, 4);
 
 	private final IconTextField searchBar = new IconTextField();
 	private Future<?> runningRequest = null;
 
-	//Constraints for items in the item panel.
-	private final GridBagConstraints constraints = new GridBagConstraints();
 	public final CardLayout cardLayout = new CardLayout();
 
 	@Getter
 	public final JPanel centerPanel = new JPanel(cardLayout);
 
-	//Keeps track of all items currently displayed on the panel.
-	private ArrayList<FlippingItemPanel> activePanels = new ArrayList<>();
+	private final RebuildScheduler rebuildScheduler = new RebuildScheduler(this::rebuildNow);
 
 	@Getter
 	JLabel resetIcon;
@@ -110,11 +109,6 @@ public class FlippingPanel extends JPanel
 		setLayout(new BorderLayout());
 		setBackground(ColorScheme.DARK_GRAY_COLOR);
 
-		constraints.fill = GridBagConstraints.HORIZONTAL;
-		constraints.weightx = 1;
-		constraints.gridx = 0;
-		constraints.gridy = 0;
-
 		//Contains the main content panel and top panel
 		JPanel container = new JPanel();
 		container.setLayout(new BorderLayout(0, 5));
@@ -122,7 +116,6 @@ public class FlippingPanel extends JPanel
 		container.setBackground(ColorScheme.DARK_GRAY_COLOR);
 
 		//Holds all the item panels
-		flippingItemsPanel.setLayout(new GridBagLayout());
 		flippingItemsPanel.setBorder((new EmptyBorder(0, 5, 0, 3)));
 		flippingItemsPanel.setBackground(ColorScheme.DARK_GRAY_COLOR);
 
@@ -235,70 +228,45 @@ public class FlippingPanel extends JPanel
 
 	}
 
+	/**
+	 * Rebuilds the panel with the given items, along with any other rebuilds requested shortly after (see
+	 * {@link RebuildScheduler}).
+	 */
 	public void rebuild(List<FlippingItem> flippingItems)
 	{
-		//Reset active panel list.
-		activePanels.clear();
-
-		SwingUtilities.invokeLater(() ->
-		{
-			flippingItemsPanel.removeAll();
-
-			if (flippingItems == null || flippingItems.size() == 0)
-			{
-				cardLayout.show(centerPanel, WELCOME_PANEL);
-				return;
-			}
+		rebuildScheduler.schedule(flippingItems);
+	}
 
-			cardLayout.show(centerPanel, ITEMS_PANEL);
+	private void rebuildNow(List<FlippingItem> flippingItems)
+	{
+		List<FlippingItem> validItems = flippingItems == null ? new ArrayList<>() : flippingItems.stream()
+			.filter(item -> item.hasValidOffers(HistoryManager.PanelSelection.FLIPPING))
+			.collect(Collectors.toList());
 
-			int index = 0;
-			for (FlippingItem item : flippingItems)
-			{
-				if (!item.hasValidOffers(HistoryManager.PanelSelection.FLIPPING))
-				{
-					continue;
-				}
+		flippingItemsPanel.setItems(validItems);
 
-				FlippingItemPanel newPanel = new FlippingItemPanel(plugin, itemManager, item);
+		cardLayout.show(centerPanel, validItems.isEmpty() ? WELCOME_PANEL : ITEMS_PANEL);
+	}
 
-				newPanel.clearButton.addMouseListener(new MouseAdapter()
-				{
-					@Override
-					public void mouseClicked(MouseEvent e)
-					{
-						if (e.getButton() == MouseEvent.BUTTON1)
-						{
-							deleteItemPanel(newPanel);
-							rebuild(plugin.getTradesForCurrentView());
-						}
-					}
-				});
+	//Invoked by the item panel once an item is scrolled into view.
+	private FlippingItemPanel createItemPanel(FlippingItem item)
+	{
+		FlippingItemPanel newPanel = new FlippingItemPanel(plugin, itemManager, item);
 
-				if (index++ > 0)
-				{
-					JPanel marginWrapper = new JPanel(new BorderLayout());
-					marginWrapper.setBackground(ColorScheme.DARK_GRAY_COLOR);
-					marginWrapper.setBorder(new EmptyBorder(4, 0, 0, 0));
-					marginWrapper.add(newPanel, BorderLayout.NORTH);
-					flippingItemsPanel.add(marginWrapper, constraints);
-				}
-				else
+		newPanel.clearButton.addMouseListener(new MouseAdapter()
+		{
+			@Override
+			public void mouseClicked(MouseEvent e)
+			{
+				if (e.getButton() == MouseEvent.BUTTON1)
 				{
-					flippingItemsPanel.add(newPanel, constraints);
+					deleteItem(item);
+					rebuild(plugin.getTradesForCurrentView());
 				}
-				constraints.gridy++;
-				activePanels.add(newPanel);
-			}
-
-			if (activePanels.isEmpty())
-			{
-				cardLayout.show(centerPanel, WELCOME_PANEL);
 			}
-
-			revalidate();
-			repaint();
 		});
+
+		return newPanel;
 	}
 
 	@Getter
@@ -352,17 +320,14 @@ public class FlippingPanel extends JPanel
 	 */
 	public void updateActivePanelsPriceOutdatedDisplay()
 	{
-		for (FlippingItemPanel activePanel : activePanels)
-		{
-			activePanel.updatePriceOutdatedDisplay();
-		}
+		SwingUtilities.invokeLater(() -> flippingItemsPanel.getRows().forEach(FlippingItemPanel::updatePriceOutdatedDisplay));
 	}
 
 	/**
 	 * uses the properties of the FlippingItem to show the ge limit and refresh time display. This is invoked
 	 * in the FlippingPlugin in two places:
 	 * <p>
-	 * 1. Everytime an offer comes in (in onGrandExchangeOfferChanged) and the user
+	 * 1. Everytime an offer comes in (in applyOffers) and the user
 	 * is currently looking at either the account wide trade list or trades list of the account currently
 	 * logged in
 	 * <p>
@@ -370,27 +335,54 @@ public class FlippingPanel extends JPanel
 	 */
 	public void updateActivePanelsGePropertiesDisplay()
 	{
-		for (FlippingItemPanel activePanel : activePanels)
+		SwingUtilities.invokeLater(() ->
 		{
-			activePanel.updateGePropertiesDisplay();
+			rebindItems();
+			flippingItemsPanel.getRows().forEach(FlippingItemPanel::updateGePropertiesDisplay);
+		});
+	}
+
+	/**
+	 * The panels are given a new copy of an item every time an offer for it comes in, so the item panels are bound
+	 * to the latest copies of the items they show, without changing which items are shown, before their ge limit
+	 * and reset timer are updated. Only run on the EDT.
+	 */
+	private void rebindItems()
+	{
+		Map<Integer, FlippingItem> latestCopies = plugin.getTradesForCurrentView().stream()
+			.collect(Collectors.toMap(FlippingItem::getItemId, Function.identity(), (first, second) -> first));
+		List<FlippingItem> shownItems = flippingItemsPanel.getItems();
+		List<FlippingItem> reboundItems = shownItems.stream()
+			.map(item -> latestCopies.getOrDefault(item.getItemId(), item))
+			.collect(Collectors.toList());
+
+		for (int i = 0; i < shownItems.size(); i++)
+		{
+			if (shownItems.get(i) != reboundItems.get(i))
+			{
+				flippingItemsPanel.setItems(reboundItems);
+				return;
+			}
 		}
 	}
 
-	private void deleteItemPanel(FlippingItemPanel itemPanel)
+	private void deleteItem(FlippingItem flippingItem)
 	{
-		if (!activePanels.contains(itemPanel))
+		if (!flippingItemsPanel.getItems().contains(flippingItem))
 		{
 			return;
 		}
 
-		itemPanel.getFlippingItem().invalidateOffers(HistoryManager.PanelSelection.FLIPPING);
+		plugin.changeItem(flippingItem, item -> item.invalidateOffers(HistoryManager.PanelSelection.FLIPPING));
+		plugin.markCurrentViewForSnapshot();
 	}
 
 	public void resetPanel()
 	{
-		for (FlippingItemPanel itemPanel : activePanels)
+		//every item shown is reset, not just the ones that are scrolled into view.
+		for (FlippingItem item : flippingItemsPanel.getItems())
 		{
-			deleteItemPanel(itemPanel);
+			deleteItem(item);
 		}
 
 		plugin.truncateTradeList();
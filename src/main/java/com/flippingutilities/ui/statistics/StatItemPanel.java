@@ -29,21 +29,21 @@ package com.flippingutilities.ui.statistics;
 import com.flippingutilities.Flip;
 import com.flippingutilities.FlippingItem;
 import com.flippingutilities.FlippingPlugin;
-import com.flippingutilities.OfferInfo;
 import com.flippingutilities.ui.utilities.UIUtilities;
+import com.flippingutilities.ui.utilities.VirtualList;
 import static com.flippingutilities.ui.utilities.UIUtilities.CLOSE_ICON;
 import static com.flippingutilities.ui.utilities.UIUtilities.DELETE_ICON;
 import static com.flippingutilities.ui.utilities.UIUtilities.OPEN_ICON;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
-import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
 import java.awt.Image;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
@@ -90,7 +90,7 @@ public class StatItemPanel extends JPanel
 	private int totalFlips;
 
 	private Instant startOfInterval;
-	private ArrayList<OfferInfo> tradeHistory = new ArrayList<>();
+	private Instant lastRecordedTradeTime;
 
 	/*
 	 Panels that construct the title panel that contains
@@ -137,20 +137,15 @@ public class StatItemPanel extends JPanel
 	private final JPanel[] subInfoPanelArray = {totalProfitPanel, profitEachPanel, timeOfLastFlipPanel, quantityPanel,
 		padPanel, roiPanel, avgBuyPricePanel, avgSellPricePanel};
 
-	private ArrayList<StatItemHistoryPanel> activePanels = new ArrayList<>();
-
 	/* Trade History containers. */
 	//Wraps the title label panel and the item history container.
 	private JPanel tradeHistoryPanel = new JPanel(new BorderLayout());
 	private JPanel tradeHistoryTitlePanel = new JPanel(new BorderLayout());
-	//Holds the individual trades in the history.
-	private JPanel tradeHistoryItemContainer = new JPanel(new GridBagLayout());
+	//Holds the individual trades in the history, but only has panels for the ones scrolled into view.
+	private VirtualList<Flip, StatItemHistoryPanel> tradeHistoryItemContainer = new VirtualList<>(StatItemHistoryPanel::new, 0);
 
 	private JLabel collapseTradeHistoryIconLabel = new JLabel(CLOSE_ICON);
 
-	//Constraints for tradeHistoryItemContainer.
-	private GridBagConstraints constraints = new GridBagConstraints();
-
 	/**
 	 * This panel represents the middle layer of information. It contains general information about the item
 	 * along with being the container for the trade history of that item.
@@ -242,14 +237,15 @@ public class StatItemPanel extends JPanel
 					{
 						collapseIconTitleLabel.setIcon(CLOSE_ICON);
 						subInfoAndHistoryContainer.setVisible(false);
-						flippingItem.setShouldExpandStatItem(false);
+						plugin.changeItem(flippingItem, item -> item.setShouldExpandStatItem(false));
 					}
 					else
 					{
 						collapseIconTitleLabel.setIcon(OPEN_ICON);
 						subInfoAndHistoryContainer.setVisible(true);
-						flippingItem.setShouldExpandStatItem(true);
+						plugin.changeItem(flippingItem, item -> item.setShouldExpandStatItem(true));
 					}
+					rebuildTradeHistory();
 				}
 			}
 
@@ -338,15 +334,16 @@ public class StatItemPanel extends JPanel
 					if (tradeHistoryItemContainer.isVisible())
 					{
 						tradeHistoryItemContainer.setVisible(false);
-						flippingItem.setShouldExpandHistory(false);
+						plugin.changeItem(flippingItem, item -> item.setShouldExpandHistory(false));
 						collapseTradeHistoryIconLabel.setIcon(CLOSE_ICON);
 					}
 					else
 					{
 						tradeHistoryItemContainer.setVisible(true);
-						flippingItem.setShouldExpandHistory(true);
+						plugin.changeItem(flippingItem, item -> item.setShouldExpandHistory(true));
 						collapseTradeHistoryIconLabel.setIcon(OPEN_ICON);
 					}
+					rebuildTradeHistory();
 				}
 			}
 
@@ -385,45 +382,21 @@ public class StatItemPanel extends JPanel
 
 	public void rebuildTradeHistory()
 	{
-		tradeHistoryItemContainer.removeAll();
-
-		activePanels = new ArrayList<>();
+		//the archived offers are only kept as aggregates so their flips can't be shown, but they are still counted.
+		totalFlips = flippingItem.countFlips(startOfInterval);
 
-		constraints.fill = GridBagConstraints.HORIZONTAL;
-		constraints.weightx = 1;
-		constraints.gridx = 0;
-		constraints.gridy = 0;
-
-		totalFlips = 0;
-		int index = 0;
-		for (Flip flip : flippingItem.getFlips(startOfInterval))
+		//the flips are only matched and shown once the trade history is expanded, as most trade histories never are.
+		if (!subInfoAndHistoryContainer.isVisible() || !tradeHistoryItemContainer.isVisible())
 		{
-			if (flip.getQuantity() == 0)
-			{
-				continue;
-			}
-
-			if (!flip.isMarginCheck())
-			{
-				totalFlips++;
-			}
-
-			StatItemHistoryPanel newPanel = new StatItemHistoryPanel(flip);
-
-			if (index++ > 0)
-			{
-				JPanel marginWrapper = new JPanel(new BorderLayout());
-				marginWrapper.add(newPanel, BorderLayout.NORTH);
-				tradeHistoryItemContainer.add(marginWrapper, constraints);
-			}
-			else
-			{
-				tradeHistoryItemContainer.add(newPanel, constraints);
-			}
-			activePanels.add(newPanel);
-			constraints.gridy++;
+			tradeHistoryItemContainer.setItems(Collections.emptyList());
+			return;
 		}
 
+		List<Flip> flips = flippingItem.getFlips(startOfInterval).stream()
+			.filter(flip -> flip.getQuantity() != 0)
+			.collect(Collectors.toList());
+		tradeHistoryItemContainer.setItems(flips);
+
 		revalidate();
 		repaint();
 	}
@@ -434,11 +407,11 @@ public class StatItemPanel extends JPanel
 	public void updateDisplays()
 	{
 		startOfInterval = statsPanel.getStartOfInterval();
-		tradeHistory = flippingItem.getIntervalHistory(startOfInterval);
-		totalProfit = flippingItem.currentProfit(tradeHistory);
-		totalExpense = flippingItem.getCashflow(tradeHistory, true);
-		totalRevenue = flippingItem.getCashflow(tradeHistory, false);
-		itemCountFlipped = flippingItem.countItemsFlipped(tradeHistory);
+		lastRecordedTradeTime = flippingItem.getLastTradeTime(startOfInterval);
+		totalProfit = flippingItem.getProfit(startOfInterval);
+		totalExpense = flippingItem.getCashflow(startOfInterval, true);
+		totalRevenue = flippingItem.getCashflow(startOfInterval, false);
+		itemCountFlipped = flippingItem.countItemsFlipped(startOfInterval);
 
 		if (itemCountFlipped == 0)
 		{
@@ -490,13 +463,12 @@ public class StatItemPanel extends JPanel
 
 	public void updateTimeDisplay()
 	{
-		if (!tradeHistory.isEmpty())
+		if (lastRecordedTradeTime != null)
 		{
-			OfferInfo lastRecordedTrade = tradeHistory.get(tradeHistory.size() - 1);
-			timeOfLastFlipValLabel.setText(UIUtilities.formatDurationTruncated(lastRecordedTrade.getTime()) + " ago");
-			timeOfLastFlipPanel.setToolTipText(UIUtilities.formatTime(lastRecordedTrade.getTime(), plugin.getConfig().twelveHourFormat(), true));
+			timeOfLastFlipValLabel.setText(UIUtilities.formatDurationTruncated(lastRecordedTradeTime) + " ago");
+			timeOfLastFlipPanel.setToolTipText(UIUtilities.formatTime(lastRecordedTradeTime, plugin.getConfig().twelveHourFormat(), true));
 
-			for (StatItemHistoryPanel panel : activePanels)
+			for (StatItemHistoryPanel panel : tradeHistoryItemContainer.getRows())
 			{
 				panel.updateTimeDisplay();
 			}
@@ -29,16 +29,15 @@ package com.flippingutilities.ui.statistics;
 import com.flippingutilities.FlippingItem;
 import com.flippingutilities.FlippingPlugin;
 import com.flippingutilities.HistoryManager;
-import com.flippingutilities.OfferInfo;
+import com.flippingutilities.ui.utilities.RebuildScheduler;
 import com.flippingutilities.ui.utilities.UIUtilities;
+import com.flippingutilities.ui.utilities.VirtualList;
 import static com.flippingutilities.ui.utilities.UIUtilities.RESET_HOVER_ICON;
 import static com.flippingutilities.ui.utilities.UIUtilities.RESET_ICON;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
 import java.awt.event.ItemEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -50,6 +49,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 import javax.swing.BorderFactory;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
@@ -98,10 +98,9 @@ public class StatsPanel extends JPanel
 	//Holds the sub info labels.
 	private JPanel subInfoContainer = new JPanel();
 
-	private JPanel statItemContainer = new JPanel(new GridBagLayout());
-
-	//Constraints for statItemContainer.
-	private final GridBagConstraints constraints = new GridBagConstraints();
+	//Holds the stat items, but only has panels for the ones scrolled into view.
+	private VirtualList<FlippingItem, StatItemPanel> statItemContainer = new VirtualList<>(
+		item -> new StatItemPanel(plugin, itemManager, item), 5);
 
 	//Combo box that selects the time interval that startOfInterval contains.
 	private JComboBox<String> timeIntervalDropdown = new JComboBox<>(TIME_INTERVAL_STRINGS);
@@ -166,7 +165,7 @@ public class StatsPanel extends JPanel
 	@Getter
 	private String selectedSort;
 
-	private ArrayList<StatItemPanel> activePanels = new ArrayList<>();
+	private final RebuildScheduler rebuildScheduler = new RebuildScheduler(this::rebuildNow);
 
 	@Getter
 	JLabel resetIcon;
@@ -188,12 +187,6 @@ public class StatsPanel extends JPanel
 
 		setLayout(new BorderLayout());
 
-		//Constraints for statItems later on.
-		constraints.fill = GridBagConstraints.HORIZONTAL;
-		constraints.weightx = 1;
-		constraints.gridx = 0;
-		constraints.gridy = 0;
-
 		timeIntervalDropdown.setRenderer(new ComboBoxListRenderer());
 		timeIntervalDropdown.setFocusable(false);
 		timeIntervalDropdown.setBackground(ColorScheme.DARKER_GRAY_COLOR);
@@ -456,58 +449,29 @@ public class StatsPanel extends JPanel
 	}
 
 	/**
-	 * Removes old stat items and builds new ones based on the passed trade list.
+	 * Removes old stat items and builds new ones based on the passed trade list, along with any other rebuilds
+	 * requested shortly after (see {@link RebuildScheduler}).
 	 * Items are initialized with their sub info containers collapsed.
 	 *
 	 * @param tradesList The list of flipping items that get shown on the stat panel.
 	 */
 	public void rebuild(List<FlippingItem> tradesList)
 	{
-		//Remove old stats
-		activePanels = new ArrayList<>();
-
-		SwingUtilities.invokeLater(() ->
-		{
-			statItemContainer.removeAll();
-			int index = 0;
-			for (FlippingItem item : sortTradeList(tradesList))
-			{
-				if (!item.hasValidOffers(HistoryManager.PanelSelection.STATS))
-				{
-					continue;
-				}
-
-				ArrayList<OfferInfo> itemTradeHistory = new ArrayList<>(item.getIntervalHistory(startOfInterval));
+		rebuildScheduler.schedule(tradesList);
+	}
 
-				//Make sure the item has stats we can use
-				if (itemTradeHistory.isEmpty() || item.countItemsFlipped(itemTradeHistory) == 0)
-				{
-					continue;
-				}
+	private void rebuildNow(List<FlippingItem> tradesList)
+	{
+		//Make sure the items have stats we can use
+		List<FlippingItem> statItems = sortTradeList(tradesList).stream()
+			.filter(item -> item.hasValidOffers(HistoryManager.PanelSelection.STATS) && item.countItemsFlipped(startOfInterval) != 0)
+			.collect(Collectors.toList());
 
-				StatItemPanel newPanel = new StatItemPanel(plugin, itemManager, item);
+		statItemContainer.setItems(statItems);
 
-				if (index++ > 0)
-				{
-					JPanel marginWrapper = new JPanel(new BorderLayout());
-					marginWrapper.setBackground(ColorScheme.DARK_GRAY_COLOR);
-					marginWrapper.setBorder(new EmptyBorder(5, 0, 0, 0));
-					marginWrapper.add(newPanel, BorderLayout.NORTH);
-					statItemContainer.add(marginWrapper, constraints);
-				}
-				else
-				{
-					//First item in the wrapper
-					statItemContainer.add(newPanel, constraints);
-				}
-				activePanels.add(newPanel);
-				constraints.gridy++;
-			}
-
-			updateDisplays(tradesList);
-			revalidate();
-			repaint();
-		});
+		updateDisplays(tradesList);
+		revalidate();
+		repaint();
 	}
 
 	/**
@@ -548,24 +512,24 @@ public class StatsPanel extends JPanel
 				continue;
 			}
 
-			List<OfferInfo> intervalHistory = item.getIntervalHistory(startOfInterval);
-			totalProfit += item.currentProfit(intervalHistory);
+			totalProfit += item.getProfit(startOfInterval);
 			totalExpenses += item.getCashflow(startOfInterval, true);
 			totalRevenues += item.getCashflow(startOfInterval, false);
-			totalQuantity += item.countItemsFlipped(intervalHistory);
+			totalQuantity += item.countItemsFlipped(startOfInterval);
 		}
 
 		mostCommonItemName = null;
 		mostFlips = 0;
-		for (StatItemPanel panel : activePanels)
+		//counted from the items rather than their panels, as only the items in view have panels.
+		for (FlippingItem item : statItemContainer.getItems())
 		{
+			int itemFlips = item.countFlips(startOfInterval);
+			totalFlips += itemFlips;
 
-			totalFlips += panel.getTotalFlips();
-
-			if (mostCommonItemName == null || mostFlips < panel.getTotalFlips())
+			if (mostCommonItemName == null || mostFlips < itemFlips)
 			{
-				mostFlips = panel.getTotalFlips();
-				mostCommonItemName = panel.getFlippingItem().getItemName();
+				mostFlips = itemFlips;
+				mostCommonItemName = item.getItemName();
 			}
 		}
 
@@ -717,7 +681,7 @@ public class StatsPanel extends JPanel
 	 */
 	public void updateTimeDisplay()
 	{
-		activePanels.forEach(StatItemPanel::updateTimeDisplay);
+		SwingUtilities.invokeLater(() -> statItemContainer.getRows().forEach(StatItemPanel::updateTimeDisplay));
 	}
 
 	/**
@@ -740,26 +704,30 @@ public class StatsPanel extends JPanel
 	 */
 	public void deletePanel(StatItemPanel itemPanel, boolean reset)
 	{
-		if (!activePanels.contains(itemPanel))
+		deleteItem(itemPanel.getFlippingItem(), reset);
+	}
+
+	private void deleteItem(FlippingItem flippingItem, boolean reset)
+	{
+		if (!statItemContainer.getItems().contains(flippingItem))
 		{
 			return;
 		}
 
-		FlippingItem item = itemPanel.getFlippingItem();
-
-		item.invalidateOffers(HistoryManager.PanelSelection.STATS, item.getIntervalHistory(reset ? Instant.EPOCH : startOfInterval));
+		Instant earliestTime = reset ? Instant.EPOCH : startOfInterval;
+		plugin.changeItem(flippingItem, item -> item.invalidateOffers(HistoryManager.PanelSelection.STATS, earliestTime));
 		plugin.truncateTradeList();
 	}
 
 	/**
-	 * Designates every panel that is currently shown on the StatPanel to be terminated.
-	 * Read deletePanel method's doc for information on how this is done.
+	 * Designates every item that is currently shown on the StatPanel to be terminated, including the ones that aren't
+	 * scrolled into view. Read deletePanel method's doc for information on how this is done.
 	 */
 	public void resetPanel()
 	{
-		for (StatItemPanel itemPanel : activePanels)
+		for (FlippingItem item : statItemContainer.getItems())
 		{
-			deletePanel(itemPanel, true);
+			deleteItem(item, true);
 		}
 	}
 
@@ -870,44 +838,40 @@ public class StatsPanel extends JPanel
 				break;
 
 			case "Most Total Profit":
-				result.sort(Comparator.comparing(item -> item.currentProfit(item.getIntervalHistory(startOfInterval))));
+				result.sort(Comparator.comparing(item -> item.getProfit(startOfInterval)));
 				break;
 
 			case "Most Profit Each":
 				result.sort(Comparator.comparing(item ->
 				{
-					ArrayList<OfferInfo> intervalHistory = item.getIntervalHistory(startOfInterval);
-					int quantity = item.countItemsFlipped(intervalHistory);
+					int quantity = item.countItemsFlipped(startOfInterval);
 
 					if (quantity == 0)
 					{
 						return 0;
 					}
 
-					return (int) item.currentProfit(intervalHistory) / quantity;
+					return (int) item.getProfit(startOfInterval) / quantity;
 				}));
 				break;
 
 			case "Highest ROI":
 				result.sort((item1, item2) ->
 				{
-					ArrayList<OfferInfo> intervalHistory1 = item1.getIntervalHistory(startOfInterval);
-					ArrayList<OfferInfo> intervalHistory2 = item2.getIntervalHistory(startOfInterval);
-
-					long totalExpense1 = item1.getCashflow(intervalHistory1, true);
-					long totalExpense2 = item2.getCashflow(intervalHistory2, true);
+					long totalExpense1 = item1.getCashflow(startOfInterval, true);
+					long totalExpense2 = item2.getCashflow(startOfInterval, true);
 
 					if (totalExpense1 == 0 || totalExpense2 == 0)
 					{
 						return -1;
 					}
 
-					return Float.compare((float) item1.currentProfit(intervalHistory1) / totalExpense1, (float) item2.currentProfit(intervalHistory2) / totalExpense2);
+					return Float.compare((float) item1.getProfit(startOfInterval) / totalExpense1, (float) item2.getProfit(startOfInterval) / totalExpense2);
 				});
 				break;
 
 			case "Highest Quantity":
-				result.sort(Comparator.comparing(item -> item.countItemsFlipped(item.getIntervalHistory(startOfInterval))));
+				result.sort(Comparator.comparing(item -> item.countItemsFlipped(startOfInterval)));
 				break;
 
 			default:
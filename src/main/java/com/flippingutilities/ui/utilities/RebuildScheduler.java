@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities.ui.utilities;
+
+import com.flippingutilities.FlippingItem;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Coalesces the requests to rebuild a panel. A request only records the trade list the panel should be rebuilt with,
+ * and the panel is rebuilt on the EDT at most once every {@link #REBUILD_INTERVAL_MILLIS} milliseconds with the trade
+ * list of the latest request, no matter how often it is asked to. A burst of requests, such as the offers that come in
+ * on login or typing in the search bar, then only rebuilds the panel once or twice rather than once for every request.
+ */
+public class RebuildScheduler
+{
+	//the least amount of time between two rebuilds.
+	public static final int REBUILD_INTERVAL_MILLIS = 100;
+
+	private final Consumer<List<FlippingItem>> rebuild;
+
+	//only used on the EDT.
+	private final Timer timer;
+
+	//the trade list of the latest request that the panel hasn't been rebuilt with yet, guarded by this.
+	private List<FlippingItem> pendingTrades;
+
+	//whether a rebuild has been scheduled that hasn't run yet, guarded by this.
+	private boolean rebuildPending;
+
+	//only used on the EDT.
+	private long lastRebuildMillis;
+
+	/**
+	 * @param rebuild rebuilds the panel with the given trade list, run on the EDT
+	 */
+	public RebuildScheduler(Consumer<List<FlippingItem>> rebuild)
+	{
+		this.rebuild = rebuild;
+		this.timer = new Timer(REBUILD_INTERVAL_MILLIS, e -> rebuildPending());
+		this.timer.setRepeats(false);
+	}
+
+	/**
+	 * Requests the panel to be rebuilt with a trade list, replacing the trade list of any request the panel hasn't
+	 * been rebuilt with yet. Can be called from any thread.
+	 */
+	public void schedule(List<FlippingItem> trades)
+	{
+		synchronized (this)
+		{
+			pendingTrades = trades;
+			if (rebuildPending)
+			{
+				return;
+			}
+			rebuildPending = true;
+		}
+
+		SwingUtilities.invokeLater(() ->
+		{
+			long millisToWait = lastRebuildMillis + REBUILD_INTERVAL_MILLIS - System.currentTimeMillis();
+			if (millisToWait <= 0)
+			{
+				rebuildPending();
+			}
+			else
+			{
+				timer.setInitialDelay((int) millisToWait);
+				timer.restart();
+			}
+		});
+	}
+
+	private void rebuildPending()
+	{
+		List<FlippingItem> trades;
+		synchronized (this)
+		{
+			trades = pendingTrades;
+			pendingTrades = null;
+			rebuildPending = false;
+		}
+
+		lastRebuildMillis = System.currentTimeMillis();
+		rebuild.accept(trades);
+	}
+}
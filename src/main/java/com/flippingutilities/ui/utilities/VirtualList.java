@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities.ui.utilities;
+
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.event.ChangeListener;
+
+/**
+ * A list of rows to be put in a scroll pane, which only has components for the rows within the viewport and a few rows
+ * above and below it. A row's component is created once the row scrolls into view and dropped once it scrolls out of
+ * it, so the cost of showing the list and the memory it takes don't grow with the number of items in it. The heights
+ * of the rows that have never been in view are estimated from the height of the first row.
+ * <p>
+ * Only used on the EDT.
+ *
+ * @param <T> the type of the items shown in the list
+ * @param <C> the type of the components the items are shown with
+ */
+public class VirtualList<T, C extends JComponent> extends JPanel
+{
+	//the amount of rows above and below the viewport that have components as well
+	private static final int OVERSCAN = 3;
+
+	private final Function<T, C> rowFactory;
+
+	//the vertical space between two rows
+	private final int gap;
+
+	private List<T> items = Collections.emptyList();
+
+	//the height of every row, which is estimated until the row has been in view.
+	private int[] heights = new int[0];
+
+	//the y coordinate of every row relative to the top of the first one, with one more entry for the bottom of the list.
+	private int[] offsets = new int[1];
+
+	private int estimatedHeight = -1;
+
+	//the components of the rows that are currently in or near the viewport, by their index.
+	private Map<Integer, C> rows = Collections.emptyMap();
+
+	private JViewport viewport;
+
+	private final ChangeListener viewportListener = e ->
+	{
+		revalidate();
+		repaint();
+	};
+
+	/**
+	 * @param rowFactory creates the component for an item when its row scrolls into view
+	 * @param gap        the vertical space between two rows
+	 */
+	public VirtualList(Function<T, C> rowFactory, int gap)
+	{
+		super(null);
+		this.rowFactory = rowFactory;
+		this.gap = gap;
+	}
+
+	/**
+	 * Replaces the items in the list. The components of the previous items are all dropped, and new ones are only
+	 * created for the rows in view.
+	 */
+	public void setItems(List<T> items)
+	{
+		this.items = new ArrayList<>(items);
+		removeAll();
+		rows = new HashMap<>();
+		heights = new int[this.items.size()];
+		Arrays.fill(heights, Math.max(estimatedHeight, 0));
+		computeOffsets();
+		revalidate();
+		repaint();
+	}
+
+	public List<T> getItems()
+	{
+		return Collections.unmodifiableList(items);
+	}
+
+	/**
+	 * @return the components of the rows currently in or near the viewport
+	 */
+	public Collection<C> getRows()
+	{
+		return new ArrayList<>(rows.values());
+	}
+
+	@Override
+	public void addNotify()
+	{
+		super.addNotify();
+		Container parent = getParent();
+		while (parent != null && !(parent instanceof JViewport))
+		{
+			parent = parent.getParent();
+		}
+		viewport = (JViewport) parent;
+		if (viewport != null)
+		{
+			viewport.addChangeListener(viewportListener);
+		}
+	}
+
+	@Override
+	public void removeNotify()
+	{
+		if (viewport != null)
+		{
+			viewport.removeChangeListener(viewportListener);
+			viewport = null;
+		}
+		super.removeNotify();
+	}
+
+	@Override
+	public Dimension getPreferredSize()
+	{
+		Insets insets = getInsets();
+		int width = viewport != null ? viewport.getExtentSize().width : super.getPreferredSize().width;
+		return new Dimension(width, offsets[items.size()] + insets.top + insets.bottom);
+	}
+
+	@Override
+	public void doLayout()
+	{
+		if (items.isEmpty())
+		{
+			return;
+		}
+
+		if (estimatedHeight < 0)
+		{
+			//the first row is measured to estimate the height of the others.
+			estimatedHeight = getRow(0).getPreferredSize().height;
+			Arrays.fill(heights, estimatedHeight);
+			computeOffsets();
+		}
+
+		Insets insets = getInsets();
+		Rectangle visibleRect = getVisibleRect();
+		int top = Math.max(0, visibleRect.y - insets.top);
+		int bottom = top + Math.max(visibleRect.height, 1);
+
+		//measuring the rows in view can change where the view ends, so it is done until every row in view is measured.
+		int first;
+		int last;
+		boolean heightsChanged;
+		do
+		{
+			first = Math.max(0, rowAt(top) - OVERSCAN);
+			last = Math.min(items.size() - 1, rowAt(bottom) + OVERSCAN);
+			heightsChanged = false;
+			for (int i = first; i <= last; i++)
+			{
+				int height = getRow(i).getPreferredSize().height;
+				if (height != heights[i])
+				{
+					heights[i] = height;
+					heightsChanged = true;
+				}
+			}
+			if (heightsChanged)
+			{
+				computeOffsets();
+			}
+		}
+		while (heightsChanged);
+
+		Map<Integer, C> rowsInView = new HashMap<>();
+		for (int i = first; i <= last; i++)
+		{
+			C row = rows.remove(i);
+			row.setBounds(insets.left, insets.top + offsets[i], getWidth() - insets.left - insets.right, heights[i]);
+			rowsInView.put(i, row);
+		}
+		rows.values().forEach(this::remove);
+		rows = rowsInView;
+
+		if (getHeight() != getPreferredSize().height)
+		{
+			//the list got taller or shorter as rows were measured, so the scroll pane has to lay it out again.
+			revalidate();
+		}
+	}
+
+	private C getRow(int index)
+	{
+		C row = rows.get(index);
+		if (row == null)
+		{
+			row = rowFactory.apply(items.get(index));
+			rows.put(index, row);
+			add(row);
+		}
+		return row;
+	}
+
+	/**
+	 * @return the index of the row at a y coordinate relative to the top of the first row
+	 */
+	private int rowAt(int y)
+	{
+		int index = Arrays.binarySearch(offsets, 0, items.size(), y);
+		//between two offsets the row that starts above y is the one at y
+		index = index < 0 ? -index - 2 : index;
+		return Math.max(0, Math.min(items.size() - 1, index));
+	}
+
+	private void computeOffsets()
+	{
+		offsets = new int[items.size() + 1];
+		for (int i = 0; i < items.size(); i++)
+		{
+			offsets[i + 1] = offsets[i] + heights[i] + (i + 1 < items.size() ? gap : 0);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import net.runelite.api.GrandExchangeOfferState;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class AccountDataCodecTest
+{
+	private static Instant baseTime = Instant.now();
+
+	private OfferInfo offer(boolean isBuy, int currentQuantityInTrade, int price, Instant time, int slot, GrandExchangeOfferState state, int totalQuantityInTrade)
+	{
+		return new OfferInfo(isBuy, 560, currentQuantityInTrade, price, time, slot, state, 12, 3, totalQuantityInTrade, 0, true, true, "gooby");
+	}
+
+	private AccountData accountData()
+	{
+		AccountData accountData = new AccountData();
+		accountData.setAccumulatedSessionTime(Duration.ofMillis(123456));
+
+		FlippingItem item = new FlippingItem(560, "Death rune", 10000, "gooby");
+		item.updateHistory(offer(true, 5, 180, baseTime.minus(20, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BUYING, 100));
+		item.updateHistory(offer(true, 100, 180, baseTime.minus(10, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 100));
+		item.updateHistory(offer(false, 40, 190, baseTime.minus(5, ChronoUnit.MINUTES), 2, GrandExchangeOfferState.SELLING, 100));
+		item.updateLatestTimes(offer(false, 40, 190, baseTime.minus(5, ChronoUnit.MINUTES), 2, GrandExchangeOfferState.SELLING, 100));
+		item.getHistory().setArchivedHistory(new ArchivedHistory(baseTime.minus(40, ChronoUnit.DAYS), 20, 3600, 20, 3800, 2, true));
+		accountData.getTrades().add(item);
+
+		accountData.getLastOffers().put(2, offer(false, 40, 190, baseTime.minus(5, ChronoUnit.MINUTES), 2, GrandExchangeOfferState.SELLING, 100));
+		accountData.getLastOffers().put(3, offer(false, 0, 190, null, 3, null, 100));
+		return accountData;
+	}
+
+	/**
+	 * Tests that encoding and then decoding account data gives back exactly the same data.
+	 */
+	@Test
+	public void roundTripIsLosslessTest() throws IOException
+	{
+		AccountData accountData = accountData();
+
+		byte[] encoded = AccountDataCodec.encode(accountData);
+		assertTrue(AccountDataCodec.isEncoded(encoded));
+
+		AccountData decoded = AccountDataCodec.decode(new ByteArrayInputStream(encoded));
+
+		Gson gson = new Gson();
+		assertEquals(gson.toJson(accountData), gson.toJson(decoded));
+		assertEquals("Death rune", decoded.findItem(560).getItemName());
+	}
+
+	/**
+	 * Tests that the offers stored in columns are written to and read from json the same way they were when they
+	 * were stored as a list of offers.
+	 */
+	@Test
+	public void jsonRoundTripTest()
+	{
+		AccountData accountData = accountData();
+		Gson gson = new Gson();
+
+		String json = gson.toJson(accountData);
+		assertTrue(json.contains("\"sO\":[{"));
+
+		AccountData decoded = gson.fromJson(json, AccountData.class);
+		HistoryManager history = decoded.findItem(560).getHistory();
+		assertEquals(accountData.getTrades().get(0).getHistory().getStandardizedOffers(), history.getStandardizedOffers());
+		assertEquals(json, gson.toJson(decoded));
+	}
+
+	@Test(expected = IOException.class)
+	public void truncatedDataIsRejectedTest() throws IOException
+	{
+		byte[] encoded = AccountDataCodec.encode(accountData());
+		byte[] truncated = new byte[encoded.length / 2];
+		System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+		AccountDataCodec.decode(new ByteArrayInputStream(truncated));
+	}
+
+	/**
+	 * Tests that a corrupt string length is rejected as a corrupt file rather than being allocated.
+	 */
+	@Test
+	public void corruptStringLengthIsRejectedTest() throws IOException
+	{
+		byte[] encoded = AccountDataCodec.encode(accountData());
+		//the magic, the version and the size of the string table each take up a single byte here
+		int lengthOffset = 4 + 1 + 1;
+		//the largest int and -1 as varints
+		byte[][] lengths = {{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+			{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}};
+		for (byte[] length : lengths)
+		{
+			byte[] corrupt = encoded.clone();
+			System.arraycopy(length, 0, corrupt, lengthOffset, length.length);
+			try
+			{
+				AccountDataCodec.decode(new ByteArrayInputStream(corrupt));
+				fail("a string length of " + Arrays.toString(length) + " was accepted");
+			}
+			catch (IOException e)
+			{
+				//expected
+			}
+		}
+	}
+}
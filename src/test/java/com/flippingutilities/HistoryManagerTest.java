@@ -30,10 +30,13 @@ package com.flippingutilities;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import net.runelite.api.GrandExchangeOfferState;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -125,6 +128,86 @@ public class HistoryManagerTest
 		assertEquals(0, historyManager.currentProfit(tradesList));
 	}
 
+	@Test
+	public void intervalHistoryOfAddedOffersTest()
+	{
+		HistoryManager other = new HistoryManager();
+		other.updateHistory(offer(true, 5, 100, baseTime.minus(50, ChronoUnit.MINUTES), 5, GrandExchangeOfferState.BOUGHT, 5, 0));
+		other.updateHistory(offer(false, 5, 110, baseTime.minus(8, ChronoUnit.MINUTES), 6, GrandExchangeOfferState.SOLD, 5, 0));
+
+		historyManager.addOffers(other.getStandardizedOffers());
+
+		//the intermediate offers of completed trades were truncated, leaving the two completed offers and the added sell
+		List<OfferInfo> tradesList = historyManager.getIntervalsHistory(baseTime.minus(10, ChronoUnit.MINUTES));
+		assertEquals(3, tradesList.size());
+		assertEquals(110, tradesList.get(0).getPrice());
+		assertEquals(baseTime.minus(7, ChronoUnit.MINUTES), tradesList.get(1).getTime());
+		assertEquals(baseTime.minus(4, ChronoUnit.MINUTES), tradesList.get(2).getTime());
+
+		//the sell from the other history is matched against the buy from before the interval when the interval is long enough
+		assertEquals(250, historyManager.currentProfit(historyManager.getIntervalsHistory(baseTime.minus(1, ChronoUnit.HOURS))));
+	}
+
+	@Test
+	public void intervalStatsMatchTradeListStatsTest()
+	{
+		HistoryManager other = new HistoryManager();
+		other.updateHistory(offer(true, 5, 90, baseTime.minus(50, ChronoUnit.MINUTES), 5, GrandExchangeOfferState.BOUGHT, 5, 0));
+		other.updateHistory(offer(false, 2, 120, baseTime.minus(8, ChronoUnit.MINUTES), 6, GrandExchangeOfferState.SELLING, 5, 0));
+		historyManager.addOffers(other.getStandardizedOffers());
+		historyManager.getIntervalsHistory(baseTime.minus(1, ChronoUnit.HOURS));
+
+		//an offer added after the totals were made is added onto them
+		historyManager.updateHistory(offer(true, 4, 98, baseTime.minus(3, ChronoUnit.MINUTES), 7, GrandExchangeOfferState.BUYING, 10, 0));
+
+		for (int minutes = 60; minutes >= 0; minutes--)
+		{
+			Instant earliestTime = baseTime.minus(minutes, ChronoUnit.MINUTES);
+			List<OfferInfo> tradesList = historyManager.getIntervalsHistory(earliestTime);
+			assertEquals(historyManager.countItemsFlipped(tradesList), historyManager.countItemsFlipped(earliestTime));
+			assertEquals(historyManager.getCashflow(tradesList, true), historyManager.getCashflow(earliestTime, true));
+			assertEquals(historyManager.getCashflow(tradesList, false), historyManager.getCashflow(earliestTime, false));
+			assertEquals(historyManager.currentProfit(tradesList), historyManager.getProfit(earliestTime));
+			assertEquals(tradesList.isEmpty() ? null : tradesList.get(tradesList.size() - 1).getTime(),
+				historyManager.getLastTradeTime(earliestTime));
+		}
+	}
+
+	/**
+	 * Tests that archiving offers keeps the stats of an interval that includes the archive the same, and that the
+	 * archive is left out of intervals that start after it.
+	 */
+	@Test
+	public void archivedOffersKeepStatsTest()
+	{
+		Instant cutoff = baseTime.minus(11, ChronoUnit.MINUTES);
+		long profitOfRecentOffers = historyManager.getProfit(cutoff);
+
+		List<OfferInfo> archived = historyManager.archiveOffersBefore(cutoff);
+		assertEquals(3, archived.size());
+		assertEquals(3, historyManager.getStandardizedOffers().size());
+
+		ArchivedHistory archive = historyManager.getArchivedHistory();
+		assertEquals(24, archive.getBoughtQuantity());
+		assertEquals(2400, archive.getBoughtValue());
+		assertEquals(10, archive.getSoldQuantity());
+		assertEquals(1050, archive.getSoldValue());
+		assertEquals(baseTime.minus(20, ChronoUnit.MINUTES), archive.getEarliestTime());
+
+		assertEquals(200, historyManager.getProfit(Instant.EPOCH));
+		assertEquals(40, historyManager.countItemsFlipped(Instant.EPOCH));
+		assertEquals(4000, historyManager.getCashflow(Instant.EPOCH, true));
+		assertEquals(4200, historyManager.getCashflow(Instant.EPOCH, false));
+
+		assertEquals(profitOfRecentOffers, historyManager.getProfit(cutoff));
+		assertEquals(0, historyManager.countArchivedFlips(cutoff));
+		assertTrue(historyManager.hasValidOffers(HistoryManager.PanelSelection.STATS));
+
+		historyManager.invalidateOffers(HistoryManager.PanelSelection.STATS);
+		assertEquals(0, historyManager.getProfit(Instant.EPOCH));
+		assertFalse(historyManager.hasValidOffers(HistoryManager.PanelSelection.STATS));
+	}
+
 	@Test
 	public void gePropertiesCorrectnessTest()
 	{
@@ -185,6 +268,93 @@ public class HistoryManagerTest
 	}
 
 
+	//tests that the flips made as offers come in are the same as the ones made from all of the offers at once
+	@Test
+	public void getFlipsMatchesCreateFlipsTest()
+	{
+		HistoryManager historyManager = new HistoryManager();
+		List<OfferInfo> standardizedOffers = new ArrayList<>();
+
+		//a whole margin check
+		standardizedOffers.add(offer(true, 1, 2, baseTime.minus(20, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 1, 1, 2));
+		standardizedOffers.add(offer(false, 1, 1, baseTime.minus(1170, ChronoUnit.SECONDS), 2, GrandExchangeOfferState.SOLD, 1, 1, 2));
+
+		//a sell that has to wait for a later buy
+		standardizedOffers.add(offer(false, 1, 2, baseTime.minus(18, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.SOLD, 1, 1, 100));
+		standardizedOffers.add(offer(true, 10, 1, baseTime.minus(17, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 10, 10, 100));
+
+		//half margin checks that are matched like regular offers
+		standardizedOffers.add(offer(true, 1, 3, baseTime.minus(15, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 1, 1, 2));
+		standardizedOffers.add(offer(false, 8, 2, baseTime.minus(14, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.SOLD, 8, 8, 100));
+		standardizedOffers.add(offer(false, 1, 5, baseTime.minus(10, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.SOLD, 1, 1, 2));
+		standardizedOffers.add(offer(true, 5, 4, baseTime.minus(9, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 5, 5, 100));
+
+		historyManager.addOffers(standardizedOffers);
+		assertEquals(1, historyManager.getFlips(baseTime.minus(12, ChronoUnit.MINUTES)).size());
+
+		//an offer that comes in after the flips were made is matched against the offers before it
+		historyManager.updateHistory(offer(false, 3, 6, baseTime.minus(2, ChronoUnit.MINUTES), 3, GrandExchangeOfferState.SOLD, 3, 0, 100));
+
+		List<Flip> flips = historyManager.createFlips(historyManager.getStandardizedOffers());
+		flips.sort(Comparator.comparing(Flip::getTime));
+
+		List<Flip> generatedFlips = historyManager.getFlips(Instant.EPOCH);
+		generatedFlips.sort(Comparator.comparing(Flip::getTime));
+
+		assertEquals(5, flips.size());
+		assertEquals(flips, generatedFlips);
+		assertEquals(2, historyManager.getFlips(baseTime.minus(12, ChronoUnit.MINUTES)).size());
+	}
+
+	//tests that a clone, which shares its offers with the history it was cloned from, isn't changed by changes to that
+	//history, and that merging two histories keeps the offers in time order.
+	@Test
+	public void cloneUnaffectedByChangesTest()
+	{
+		HistoryManager clone = historyManager.clone();
+		List<OfferInfo> clonedOffers = new ArrayList<>(clone.getStandardizedOffers());
+
+		historyManager.updateHistory(offer(true, 5, 100, baseTime.minus(30, ChronoUnit.MINUTES), 5, GrandExchangeOfferState.BOUGHT, 5, 0));
+		historyManager.invalidateOffers(HistoryManager.PanelSelection.FLIPPING);
+
+		assertEquals(7, historyManager.getStandardizedOffers().size());
+		assertFalse(historyManager.hasValidOffers(HistoryManager.PanelSelection.FLIPPING));
+		assertEquals(clonedOffers, clone.getStandardizedOffers());
+		assertTrue(clone.hasValidOffers(HistoryManager.PanelSelection.FLIPPING));
+
+		clone.addOffers(historyManager);
+		List<OfferInfo> mergedOffers = clone.getStandardizedOffers();
+		assertEquals(13, mergedOffers.size());
+		for (int i = 1; i < mergedOffers.size(); i++)
+		{
+			assertFalse(mergedOffers.get(i).getTime().isBefore(mergedOffers.get(i - 1).getTime()));
+		}
+	}
+
+	//tests that the running count of flips agrees with counting the flips themselves, for every interval
+	@Test
+	public void countFlipsMatchesFlipsTest()
+	{
+		HistoryManager historyManager = new HistoryManager();
+
+		historyManager.updateHistory(offer(true, 1, 2, baseTime.minus(20, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 1, 1, 2));
+		historyManager.updateHistory(offer(false, 1, 1, baseTime.minus(1170, ChronoUnit.SECONDS), 2, GrandExchangeOfferState.SOLD, 1, 1, 2));
+		historyManager.updateHistory(offer(false, 4, 5, baseTime.minus(18, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.SOLD, 4, 4, 100));
+		historyManager.updateHistory(offer(true, 10, 1, baseTime.minus(17, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 10, 10, 100));
+		historyManager.updateHistory(offer(false, 3, 6, baseTime.minus(10, ChronoUnit.MINUTES), 2, GrandExchangeOfferState.SOLD, 3, 3, 100));
+		//a buy margin check that a sell is left waiting on
+		historyManager.updateHistory(offer(true, 1, 3, baseTime.minus(5, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 1, 1, 2));
+		historyManager.updateHistory(offer(false, 2, 6, baseTime.minus(5, ChronoUnit.MINUTES), 2, GrandExchangeOfferState.SOLD, 2, 2, 100));
+
+		for (int minutes = 25; minutes >= 0; minutes--)
+		{
+			Instant earliestTime = baseTime.minus(minutes, ChronoUnit.MINUTES);
+			long expected = historyManager.getFlips(earliestTime).stream().filter(flip -> flip.getQuantity() != 0 && !flip.isMarginCheck()).count();
+			assertEquals(expected, historyManager.countFlips(earliestTime));
+		}
+		assertEquals(3, historyManager.countFlips(Instant.EPOCH));
+	}
+
 	//tests that flips are correctly generated even when there are an uneven amount of margins checks. The
 	//unpaired margin check should be paired with the a regular non margin check offer at a time close to it.
 	@Test
@@ -405,6 +575,30 @@ public class HistoryManagerTest
 		assertEquals(someStandardizedOffers, truncatedOffers);
 	}
 
+	//tests that the offers of a trade in progress are removed when it completes, including when the history was
+	//copied while the trade was in progress and has to work out which offers belong to it.
+	@Test
+	public void tradeOffersCollapsedOnCompletionTest()
+	{
+		historyManager.updateHistory(offer(true, 2, 100, baseTime.minus(3, ChronoUnit.MINUTES), 5, GrandExchangeOfferState.BUYING, 10, 0));
+		historyManager.updateHistory(offer(false, 4, 110, baseTime.minus(2, ChronoUnit.MINUTES), 6, GrandExchangeOfferState.SELLING, 8, 0));
+		historyManager.updateHistory(offer(true, 6, 100, baseTime.minus(1, ChronoUnit.MINUTES), 5, GrandExchangeOfferState.BUYING, 10, 0));
+		assertEquals(9, historyManager.getStandardizedOffers().size());
+		assertEquals(historyManager.currentProfit(historyManager.getStandardizedOffers()), historyManager.getProfit(Instant.EPOCH));
+
+		HistoryManager copy = historyManager.clone();
+		for (HistoryManager history : Arrays.asList(historyManager, copy))
+		{
+			history.updateHistory(offer(true, 10, 100, baseTime, 5, GrandExchangeOfferState.BOUGHT, 10, 0));
+
+			List<OfferInfo> offers = history.getStandardizedOffers();
+			assertEquals(8, offers.size());
+			assertEquals(GrandExchangeOfferState.SELLING, offers.get(6).getState());
+			assertEquals(10, offers.get(7).getQuantitySinceLastOffer());
+			assertEquals(history.currentProfit(offers), history.getProfit(Instant.EPOCH));
+		}
+	}
+
 	@Test
 	public void offersAreCorrectlyStandardizedTest()
 	{
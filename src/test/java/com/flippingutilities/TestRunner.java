@@ -35,7 +35,9 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-	HistoryManagerTest.class
+	HistoryManagerTest.class,
+	AccountDataCodecTest.class,
+	TradePersisterTest.class
 })
 public class TestRunner {
 
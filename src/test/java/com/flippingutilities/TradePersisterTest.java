@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2020, Belieal <https://github.com/Belieal>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.flippingutilities;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import net.runelite.api.GrandExchangeOfferState;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TradePersisterTest
+{
+	private static final String DISPLAY_NAME = "gooby";
+
+	private static Instant baseTime = Instant.now();
+
+	private File originalDirectory;
+
+	private File directory;
+
+	private OfferInfo offer(int itemId, int slot, Instant time)
+	{
+		return new OfferInfo(true, itemId, 10, 100, time, slot, GrandExchangeOfferState.BOUGHT, 0, 10, 10, 10, true, true, DISPLAY_NAME);
+	}
+
+	private JournalEntry entry(long sequence, OfferInfo offer)
+	{
+		return JournalEntry.ofOffer(sequence, offer, "item " + offer.getItemId(), 100);
+	}
+
+	private int offerCount(AccountData accountData)
+	{
+		return accountData.getTrades().stream().mapToInt(item -> item.getHistory().getStandardizedOffers().size()).sum();
+	}
+
+	private File file(String extension)
+	{
+		return new File(directory, DISPLAY_NAME + extension);
+	}
+
+	private ShardManifest manifest(String extension) throws IOException
+	{
+		return new Gson().fromJson(new String(Files.readAllBytes(file(extension).toPath()), StandardCharsets.UTF_8),
+			ShardManifest.class);
+	}
+
+	/**
+	 * An account with items in three different shards.
+	 */
+	private AccountData shardedAccount()
+	{
+		AccountData accountData = new AccountData();
+		accountData.applyOffer(offer(560, 1, baseTime.minus(10, ChronoUnit.MINUTES)), "item 560", 100);
+		accountData.applyOffer(offer(561, 2, baseTime.minus(8, ChronoUnit.MINUTES)), "item 561", 100);
+		accountData.applyOffer(offer(2, 3, baseTime.minus(6, ChronoUnit.MINUTES)), "item 2", 100);
+		return accountData;
+	}
+
+	@Before
+	public void setUp() throws IOException
+	{
+		originalDirectory = TradePersister.getParentDirectory();
+		directory = Files.createTempDirectory("flipping").toFile();
+		TradePersister.setParentDirectory(directory);
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		TradePersister.setParentDirectory(originalDirectory);
+		TradePersister.setShardedStorage(false);
+		try (Stream<File> files = Files.walk(directory.toPath()).map(Path::toFile))
+		{
+			files.sorted(Comparator.reverseOrder()).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Tests that a journal whose last line was only partly written (the client closed mid append) is replayed up to
+	 * that line.
+	 */
+	@Test
+	public void replayStopsAtMalformedLastLineTest() throws IOException
+	{
+		TradePersister.storeTrades(DISPLAY_NAME, new AccountData(), FlippingConfig.StorageFormat.JSON);
+		TradePersister.appendToJournal(DISPLAY_NAME, Arrays.asList(
+			entry(1, offer(560, 1, baseTime.minus(10, ChronoUnit.MINUTES))),
+			entry(2, offer(561, 2, baseTime.minus(5, ChronoUnit.MINUTES)))));
+		Files.write(file(TradePersister.JOURNAL_EXTENSION).toPath(), "{\"s\":3,\"o\":{\"b\":tr".getBytes(StandardCharsets.UTF_8),
+			StandardOpenOption.APPEND);
+
+		AccountData loaded = TradePersister.loadTrades(DISPLAY_NAME);
+		assertEquals(2, loaded.getJournalSequence());
+		assertEquals(2, loaded.getTrades().size());
+		assertEquals(2, offerCount(loaded));
+	}
+
+	/**
+	 * Tests that journal entries that are already part of the snapshot, which happens when the client closes after a
+	 * snapshot is written but before the journal is deleted, aren't applied twice.
+	 */
+	@Test
+	public void entriesInSnapshotAreSkippedTest() throws IOException
+	{
+		OfferInfo first = offer(560, 1, baseTime.minus(10, ChronoUnit.MINUTES));
+		OfferInfo second = offer(560, 2, baseTime.minus(8, ChronoUnit.MINUTES));
+		OfferInfo third = offer(560, 3, baseTime.minus(6, ChronoUnit.MINUTES));
+
+		AccountData accountData = new AccountData();
+		accountData.applyOffer(first, "item 560", 100);
+		accountData.applyOffer(second, "item 560", 100);
+		accountData.setJournalSequence(2);
+		TradePersister.storeTrades(DISPLAY_NAME, accountData, FlippingConfig.StorageFormat.JSON);
+		TradePersister.appendToJournal(DISPLAY_NAME, Arrays.asList(entry(1, first), entry(2, second), entry(3, third)));
+
+		AccountData loaded = TradePersister.loadTrades(DISPLAY_NAME);
+		assertEquals(3, loaded.getJournalSequence());
+		assertEquals(3, offerCount(loaded));
+	}
+
+	/**
+	 * Tests that the entries of a sealed journal left behind by an interrupted compaction are replayed before the
+	 * active journal's, and that they are skipped once the compaction that folded them in is interrupted before the
+	 * sealed journal could be dropped.
+	 */
+	@Test
+	public void interruptedCompactionTest() throws IOException
+	{
+		TradePersister.storeTrades(DISPLAY_NAME, new AccountData(), FlippingConfig.StorageFormat.JSON);
+		TradePersister.appendToJournal(DISPLAY_NAME, Arrays.asList(
+			entry(1, offer(560, 1, baseTime.minus(10, ChronoUnit.MINUTES))),
+			entry(2, offer(561, 2, baseTime.minus(8, ChronoUnit.MINUTES)))));
+		File sealedJournal = file(TradePersister.SEALED_JOURNAL_EXTENSION);
+		Files.move(file(TradePersister.JOURNAL_EXTENSION).toPath(), sealedJournal.toPath());
+		byte[] sealedEntries = Files.readAllBytes(sealedJournal.toPath());
+		TradePersister.appendToJournal(DISPLAY_NAME, entry(3, offer(560, 3, baseTime.minus(6, ChronoUnit.MINUTES))));
+
+		AccountData loaded = TradePersister.loadTrades(DISPLAY_NAME);
+		assertEquals(3, loaded.getJournalSequence());
+		assertEquals(3, offerCount(loaded));
+
+		//the leftover sealed journal is folded in, the active journal is left for the next compaction
+		TradePersister.compactJournal(DISPLAY_NAME);
+		assertFalse(sealedJournal.exists());
+		assertTrue(file(TradePersister.JOURNAL_EXTENSION).exists());
+
+		//as if the client closed right after the compacted snapshot was moved into place
+		Files.write(sealedJournal.toPath(), sealedEntries);
+		loaded = TradePersister.loadTrades(DISPLAY_NAME);
+		assertEquals(3, loaded.getJournalSequence());
+		assertEquals(3, offerCount(loaded));
+	}
+
+	/**
+	 * Tests that a client whose copy of an account is behind the journal another client wrote finds out before it
+	 * journals offers of its own, so its entries come after the other client's rather than reusing their sequence
+	 * numbers, and that it still finds out once the other client's entries have been compacted into the snapshot.
+	 */
+	@Test
+	public void interleavedSessionsKeepEveryOfferTest() throws IOException
+	{
+		TradePersister.storeTrades(DISPLAY_NAME, new AccountData(), FlippingConfig.StorageFormat.JSON);
+		AccountData otherClient = TradePersister.loadTrades(DISPLAY_NAME);
+
+		TradePersister.appendToJournal(DISPLAY_NAME, Arrays.asList(
+			entry(1, offer(560, 1, baseTime.minus(10, ChronoUnit.MINUTES))),
+			entry(2, offer(561, 2, baseTime.minus(8, ChronoUnit.MINUTES)))));
+		assertEquals(2, TradePersister.latestJournalSequence(DISPLAY_NAME));
+		assertTrue(TradePersister.latestJournalSequence(DISPLAY_NAME) > otherClient.getJournalSequence());
+
+		TradePersister.compactJournal(DISPLAY_NAME);
+		assertEquals(2, TradePersister.latestJournalSequence(DISPLAY_NAME));
+
+		otherClient = TradePersister.loadTrades(DISPLAY_NAME);
+		TradePersister.appendToJournal(DISPLAY_NAME,
+			entry(otherClient.nextJournalSequence(), offer(562, 3, baseTime.minus(6, ChronoUnit.MINUTES))));
+		assertEquals(3, TradePersister.latestJournalSequence(DISPLAY_NAME));
+
+		AccountData loaded = TradePersister.loadTrades(DISPLAY_NAME);
+		assertEquals(3, loaded.getJournalSequence());
+		assertEquals(3, loaded.getTrades().size());
+	}
+
+	/**
+	 * Tests that a json snapshot is still plain json with its checksum in it, and that loading a snapshot whose
+	 * contents no longer match its checksum falls back to the backup generation.
+	 */
+	@Test
+	public void jsonSnapshotChecksumTest() throws IOException
+	{
+		AccountData accountData = new AccountData();
+		accountData.applyOffer(offer(560, 1, baseTime.minus(10, ChronoUnit.MINUTES)), "item 560", 100);
+		TradePersister.storeTrades(DISPLAY_NAME, accountData, FlippingConfig.StorageFormat.JSON);
+		accountData.applyOffer(offer(561, 2, baseTime.minus(5, ChronoUnit.MINUTES)), "item 561", 100);
+		TradePersister.storeTrades(DISPLAY_NAME, accountData, FlippingConfig.StorageFormat.JSON);
+
+		File snapshot = file(TradePersister.SNAPSHOT_EXTENSION);
+		try (JsonReader reader = new JsonReader(Files.newBufferedReader(snapshot.toPath(), StandardCharsets.UTF_8)))
+		{
+			//json readers aren't lenient unless they are told to be
+			JsonObject json = new Gson().getAdapter(JsonElement.class).read(reader).getAsJsonObject();
+			assertTrue(json.has("crc32"));
+			assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+		}
+		assertEquals(2, TradePersister.loadTrades(DISPLAY_NAME).getTrades().size());
+
+		String contents = new String(Files.readAllBytes(snapshot.toPath()), StandardCharsets.UTF_8);
+		assertTrue(contents.contains("\"journalSequence\":0"));
+		Files.write(snapshot.toPath(), contents.replace("\"journalSequence\":0", "\"journalSequence\":7")
+			.getBytes(StandardCharsets.UTF_8));
+		assertEquals(1, TradePersister.loadTrades(DISPLAY_NAME).getTrades().size());
+	}
+
+	/**
+	 * Tests that an account stored in shards loads with the same items, in the same order, as it was stored with.
+	 */
+	@Test
+	public void shardedRoundTripTest() throws IOException
+	{
+		TradePersister.setShardedStorage(true);
+		AccountData accountData = shardedAccount();
+		TradePersister.storeTrades(DISPLAY_NAME, accountData, FlippingConfig.StorageFormat.JSON);
+		assertEquals(3, accountData.getShardFiles().size());
+
+		AccountData loaded = TradePersister.loadTrades(DISPLAY_NAME);
+		assertEquals(accountData.getShardFiles(), loaded.getShardFiles());
+		assertEquals(new Gson().toJson(accountData.getTrades()), new Gson().toJson(loaded.getTrades()));
+	}
+
+	/**
+	 * Tests that storing an account again only writes the shards of the items that changed, and that the shard files
+	 * of the previous generation are kept for the backup manifest.
+	 */
+	@Test
+	public void partialShardRewriteTest() throws IOException
+	{
+		TradePersister.setShardedStorage(true);
+		AccountData accountData = shardedAccount();
+		TradePersister.storeTrades(DISPLAY_NAME, accountData, FlippingConfig.StorageFormat.JSON);
+		Map<Integer, String> firstShardFiles = new HashMap<>(accountData.getShardFiles());
+
+		accountData.applyOffer(offer(560, 4, baseTime.minus(4, ChronoUnit.MINUTES)), "item 560", 100);
+		TradePersister.storeTrades(DISPLAY_NAME, accountData, FlippingConfig.StorageFormat.JSON);
+		Map<Integer, String> secondShardFiles = accountData.getShardFiles();
+		for (int itemId : new int[]{561, 2})
+		{
+			int shard = ShardManifest.shardOf(itemId);
+			assertEquals(firstShardFiles.get(shard), secondShardFiles.get(shard));
+		}
+		int changedShard = ShardManifest.shardOf(560);
+		assertNotEquals(firstShardFiles.get(changedShard), secondShardFiles.get(changedShard));
+		File shardDirectory = file(TradePersister.SHARD_DIRECTORY_EXTENSION);
+		assertTrue(new File(shardDirectory, firstShardFiles.get(changedShard)).exists());
+		assertEquals(firstShardFiles, manifest(TradePersister.MANIFEST_EXTENSION + TradePersister.BACKUP_EXTENSION).getShardFiles());
+
+		assertEquals(4, offerCount(TradePersister.loadTrades(DISPLAY_NAME)));
+	}
+
+	/**
+	 * Tests that reloading an account another client stored in shards only reads the shards that client rewrote and
+	 * takes the rest of the items from the cached copy.
+	 */
+	@Test
+	public void reloadTradesReusesUnchangedShardsTest() throws IOException
+	{
+		TradePersister.setShardedStorage(true);
+		TradePersister.storeTrades(DISPLAY_NAME, shardedAccount(), FlippingConfig.StorageFormat.JSON);
+		AccountData cached = TradePersister.loadTrades(DISPLAY_NAME);
+
+		AccountData otherClient = TradePersister.loadTrades(DISPLAY_NAME);
+		otherClient.applyOffer(offer(560, 4, baseTime.minus(4, ChronoUnit.MINUTES)), "item 560", 100);
+		TradePersister.storeTrades(DISPLAY_NAME, otherClient, FlippingConfig.StorageFormat.JSON);
+
+		AccountData reloaded = TradePersister.reloadTrades(DISPLAY_NAME, cached);
+		assertEquals(4, offerCount(reloaded));
+		assertEquals(otherClient.getShardFiles(), reloaded.getShardFiles());
+		assertSame(cached.findItem(561), reloaded.findItem(561));
+		assertSame(cached.findItem(2), reloaded.findItem(2));
+		assertNotEquals(cached.findItem(560), reloaded.findItem(560));
+		assertEquals(new Gson().toJson(otherClient.getTrades()), new Gson().toJson(reloaded.getTrades()));
+	}
+
+	/**
+	 * Tests that when the manifest can't be read, storing the account doesn't write over or delete the shard files
+	 * the backup manifest points at, so the backup generation can still be loaded.
+	 */
+	@Test
+	public void unreadableManifestKeepsBackupShardsTest() throws IOException
+	{
+		TradePersister.setShardedStorage(true);
+		AccountData accountData = shardedAccount();
+		TradePersister.storeTrades(DISPLAY_NAME, accountData, FlippingConfig.StorageFormat.JSON);
+		accountData.applyOffer(offer(561, 4, baseTime.minus(4, ChronoUnit.MINUTES)), "item 561", 100);
+		TradePersister.storeTrades(DISPLAY_NAME, accountData, FlippingConfig.StorageFormat.JSON);
+
+		File shardDirectory = file(TradePersister.SHARD_DIRECTORY_EXTENSION);
+		ShardManifest backup = manifest(TradePersister.MANIFEST_EXTENSION + TradePersister.BACKUP_EXTENSION);
+		Map<String, byte[]> backupShards = new HashMap<>();
+		for (String shardFile : backup.getShardFiles().values())
+		{
+			backupShards.put(shardFile, Files.readAllBytes(new File(shardDirectory, shardFile).toPath()));
+		}
+
+		Files.write(file(TradePersister.MANIFEST_EXTENSION).toPath(), "{\"g\":".getBytes(StandardCharsets.UTF_8));
+		accountData.applyOffer(offer(2, 5, baseTime.minus(2, ChronoUnit.MINUTES)), "item 2", 100);
+		TradePersister.storeTrades(DISPLAY_NAME, accountData, FlippingConfig.StorageFormat.JSON);
+		assertEquals(3, manifest(TradePersister.MANIFEST_EXTENSION).getGeneration());
+		assertEquals(backup, manifest(TradePersister.MANIFEST_EXTENSION + TradePersister.BACKUP_EXTENSION));
+		for (Map.Entry<String, byte[]> shard : backupShards.entrySet())
+		{
+			assertTrue(Arrays.equals(shard.getValue(), Files.readAllBytes(new File(shardDirectory, shard.getKey()).toPath())));
+		}
+		assertEquals(5, offerCount(TradePersister.loadTrades(DISPLAY_NAME)));
+
+		//as if the client closed before the new manifest was moved into place
+		Files.write(file(TradePersister.MANIFEST_EXTENSION).toPath(), "{\"g\":".getBytes(StandardCharsets.UTF_8));
+		assertEquals(3, offerCount(TradePersister.loadTrades(DISPLAY_NAME)));
+	}
+}